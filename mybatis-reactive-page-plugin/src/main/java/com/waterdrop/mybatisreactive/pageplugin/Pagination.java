@@ -16,10 +16,12 @@
 package com.waterdrop.mybatisreactive.pageplugin;
 
 
+import com.waterdrop.mybatisreactive.mapping.ShardAwareRowBounds;
 import org.apache.ibatis.session.RowBounds;
 
 import java.beans.Transient;
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * <p>
@@ -29,7 +31,7 @@ import java.io.Serializable;
  * 注意：插件仅支持RowBounds及其子类作为分页参数
  *
  */
-public class Pagination extends RowBounds implements Serializable {
+public class Pagination extends RowBounds implements ShardAwareRowBounds, Serializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -172,6 +174,28 @@ public class Pagination extends RowBounds implements Serializable {
         return super.getLimit();
     }
 
+    /**
+     * 分片查询时单个分片的分页：取该分片前 offset + limit 条
+     */
+    @Override
+    public RowBounds forShard() {
+        Pagination shard = new Pagination(1, getOffset() + getLimit(), searchCount);
+        shard.setOptimizeCountSql(optimizeCountSql);
+        return shard;
+    }
+
+    /**
+     * 合并各分片的总数
+     */
+    @Override
+    public void gather(List<RowBounds> shardRowBounds) {
+        long total = 0;
+        for (RowBounds shard : shardRowBounds) {
+            total += ((Pagination) shard).getTotal();
+        }
+        setTotal(total);
+    }
+
     @Override
     public String toString() {
         return "Pagination { total=" + total + " ,size=" + size + " ,pages=" + this.getPages() + " ,current=" + current + " }";
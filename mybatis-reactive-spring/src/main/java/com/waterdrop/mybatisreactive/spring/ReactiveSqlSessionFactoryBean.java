@@ -17,6 +17,7 @@ package com.waterdrop.mybatisreactive.spring;
 
 import com.waterdrop.mybatisreactive.builder.xml.ReactiveXMLConfigBuilder;
 import com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment;
+import com.waterdrop.mybatisreactive.mapping.ReplicaSelector;
 import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
 import com.waterdrop.mybatisreactive.session.ReactiveSqlSessionFactory;
 import com.waterdrop.mybatisreactive.session.ReactiveSqlSessionFactoryBuilder;
@@ -54,6 +55,7 @@ import org.springframework.util.ClassUtils;
 
 import java.io.IOException;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Properties;
@@ -100,6 +102,12 @@ public class ReactiveSqlSessionFactoryBean
 
   private ConnectionFactory connectionFactory;
 
+  private ConnectionFactory[] replicaConnectionFactories;
+
+  private ReplicaSelector replicaSelector;
+
+  private ConnectionFactory[] shardConnectionFactories;
+
   private ReactiveTransactionFactory transactionFactory;
 
   private Properties configurationProperties;
@@ -386,6 +394,38 @@ public class ReactiveSqlSessionFactoryBean
     this.connectionFactory = connectionFactory;
   }
 
+  /**
+   * Set read replicas of the {@code connectionFactory}. Selects run on a replica outside a Spring managed transaction,
+   * inside one only when marked {@code @ReadOnly}. Once a session ran any other statement, it stays on the
+   * {@code connectionFactory}.
+   *
+   * @param replicaConnectionFactories
+   *          the replicas
+   */
+  public void setReplicaConnectionFactories(ConnectionFactory... replicaConnectionFactories) {
+    this.replicaConnectionFactories = replicaConnectionFactories;
+  }
+
+  /**
+   * Set how a replica is chosen, round robin by default.
+   *
+   * @param replicaSelector
+   *          a replica selector
+   */
+  public void setReplicaSelector(ReplicaSelector replicaSelector) {
+    this.replicaSelector = replicaSelector;
+  }
+
+  /**
+   * Set the shards that statements with a sharding strategy of the configuration are spread over.
+   *
+   * @param shardConnectionFactories
+   *          the shards
+   */
+  public void setShardConnectionFactories(ConnectionFactory... shardConnectionFactories) {
+    this.shardConnectionFactories = shardConnectionFactories;
+  }
+
   /**
    * Sets the {@code SqlSessionFactoryBuilder} to use when creating the {@code SqlSessionFactory}.
    *
@@ -569,7 +609,10 @@ public class ReactiveSqlSessionFactoryBean
 
     ((ReactiveConfiguration)targetConfiguration).setReactiveEnvironment(new ReactiveEnvironment(this.environment,
         this.transactionFactory == null ? new SpringManagedReactiveTransactionFactory() : this.transactionFactory,
-        this.connectionFactory));
+        this.connectionFactory,
+        this.replicaConnectionFactories == null ? null : Arrays.asList(this.replicaConnectionFactories),
+        this.replicaSelector,
+        this.shardConnectionFactories == null ? null : Arrays.asList(this.shardConnectionFactories)));
 
     if (this.mapperLocations != null) {
       if (this.mapperLocations.length == 0) {
@@ -16,6 +16,7 @@
 package com.waterdrop.mybatisreactive.spring;
 
 import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.session.ReactiveResultHandler;
 import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
 import com.waterdrop.mybatisreactive.session.ReactiveSqlSessionFactory;
 import io.r2dbc.spi.Connection;
@@ -26,9 +27,11 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.dao.support.PersistenceExceptionTranslator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -185,6 +188,78 @@ public class ReactiveSqlSessionTemplate implements ReactiveSqlSession, Disposabl
     return this.sqlSessionProxy.selectList(statement, parameter, rowBounds);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <K, V> Mono<Map<K, V>> selectMap(String statement, String mapKey) {
+    return this.sqlSessionProxy.selectMap(statement, mapKey);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <K, V> Mono<Map<K, V>> selectMap(String statement, Object parameter, String mapKey) {
+    return this.sqlSessionProxy.selectMap(statement, parameter, mapKey);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <K, V> Mono<Map<K, V>> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
+    return this.sqlSessionProxy.selectMap(statement, parameter, mapKey, rowBounds);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T> Flux<T> selectCursor(String statement) {
+    return this.sqlSessionProxy.selectCursor(statement);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T> Flux<T> selectCursor(String statement, Object parameter) {
+    return this.sqlSessionProxy.selectCursor(statement, parameter);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T> Flux<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+    return this.sqlSessionProxy.selectCursor(statement, parameter, rowBounds);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T> Mono<Void> select(String statement, Object parameter, ReactiveResultHandler<? super T> handler) {
+    return this.sqlSessionProxy.select(statement, parameter, handler);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T> Mono<Void> select(String statement, ReactiveResultHandler<? super T> handler) {
+    return this.sqlSessionProxy.select(statement, handler);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T> Mono<Void> select(String statement, Object parameter, RowBounds rowBounds, ReactiveResultHandler<? super T> handler) {
+    return this.sqlSessionProxy.select(statement, parameter, rowBounds, handler);
+  }
+
   /**
    * {@inheritDoc}
    * @return
@@ -283,6 +358,30 @@ public class ReactiveSqlSessionTemplate implements ReactiveSqlSession, Disposabl
     throw new UnsupportedOperationException("Manual rollback is not allowed over a Spring managed ReactiveSqlSession");
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Mono<Void> createSavepoint(String name) {
+    return this.sqlSessionProxy.createSavepoint(name);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Mono<Void> rollbackToSavepoint(String name) {
+    return this.sqlSessionProxy.rollbackToSavepoint(name);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Mono<Void> releaseSavepoint(String name) {
+    return this.sqlSessionProxy.releaseSavepoint(name);
+  }
+
   /**
    * {@inheritDoc}
    * @return
@@ -384,15 +483,15 @@ public class ReactiveSqlSessionTemplate implements ReactiveSqlSession, Disposabl
         if(result instanceof Mono){
 //          Function<Throwable,Mono> caFunc = (Throwable t)-> catchFunc(t, finalSqlSession);
           return isTransactionalMono.flatMap(isTransactional -> {
-            return ((Mono) result).doFinally(it -> {
-              commitFunc.apply(finalSqlSession,isTransactional).then(closeMono).subscribe();
+            return ((Mono) result).doFinally(signal -> {
+              releaseSqlSession(finalSqlSession, isTransactional, (SignalType) signal, commitFunc, closeMono);
             });
           });
         }
         if(result instanceof Flux){
           return isTransactionalMono.flatMapMany(isTransactional -> {
-            return ((Flux) result).doFinally(it -> {
-              commitFunc.apply(finalSqlSession,isTransactional).then(closeMono).subscribe();
+            return ((Flux) result).doFinally(signal -> {
+              releaseSqlSession(finalSqlSession, isTransactional, (SignalType) signal, commitFunc, closeMono);
             });
           });
 
@@ -416,6 +515,13 @@ public class ReactiveSqlSessionTemplate implements ReactiveSqlSession, Disposabl
       }
     }
 
+    private void releaseSqlSession(ReactiveSqlSession sqlSession, boolean isTransactional, SignalType signal,
+        BiFunction<ReactiveSqlSession, Boolean, Mono<Void>> commitFunc, Mono<Void> closeMono) {
+      // a cancelled call is not committed, close rolls it back if needed and returns the connection
+      Mono<Void> commit = signal == SignalType.CANCEL ? Mono.empty() : commitFunc.apply(sqlSession, isTransactional);
+      commit.onErrorResume(e -> closeMono.then(Mono.error(e))).then(closeMono).subscribe();
+    }
+
     private Mono<Object> catchFunc(Throwable t, ReactiveSqlSession sqlSession){
       Throwable unwrapped = unwrapThrowable(t);
       if (ReactiveSqlSessionTemplate.this.exceptionTranslator != null && unwrapped instanceof PersistenceException) {
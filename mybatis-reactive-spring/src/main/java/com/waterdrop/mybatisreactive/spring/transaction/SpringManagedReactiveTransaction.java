@@ -18,6 +18,7 @@ package com.waterdrop.mybatisreactive.spring.transaction;
 import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
 import com.waterdrop.mybatisreactive.spring.logging.Logger;
 import com.waterdrop.mybatisreactive.spring.logging.LoggerFactory;
+import com.waterdrop.mybatisreactive.transaction.ConnectionScope;
 import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
 import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.ConnectionFactory;
@@ -29,6 +30,7 @@ import org.springframework.transaction.support.ResourceHolderSupport;
 import reactor.core.publisher.Mono;
 
 import java.sql.SQLException;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.springframework.util.Assert.notNull;
@@ -55,9 +57,9 @@ public class SpringManagedReactiveTransaction implements ReactiveTransaction {
 
   private AtomicReference<Connection> connectionRef = new AtomicReference<>();
 
-  private Mono<Boolean> isConnectionTransactional;
+  private Mono<Optional<TransactionSynchronizationManager>> synchronization;
 
-  private Mono<Boolean> autoCommit;
+  private volatile boolean borrowed;
 
   public SpringManagedReactiveTransaction(ConnectionFactory connectionFactory) {
     notNull(connectionFactory, "No connectionFactory specified");
@@ -68,28 +70,54 @@ public class SpringManagedReactiveTransaction implements ReactiveTransaction {
    * {@inheritDoc}
    */
   @Override
-  public Mono<Connection> getConnection() {
+  public synchronized Mono<Connection> getConnection() {
     if (this.connection == null) {
-     connection = openConnection();
+      // a failed lookup is attempted again on the next call
+      this.connection = openConnection().doOnError(e -> resetConnection()).cache();
     }
-    return this.connection.doOnNext(c-> connectionRef.updateAndGet(prev->c));
+    return this.connection;
   }
 
   /**
-   * Gets a connection from Spring transaction manager and discovers if this {@code Transaction} should manage
-   * connection or let it to Spring.
-   * <p>
-   * It also reads autocommit setting because when using Spring Transaction MyBatis thinks that autocommit is always
-   * false and will always call commit/rollback so we need to no-op that calls.
+   * Gets a connection from Spring transaction manager, once per session; every statement reuses it.
+   * Outside of a Spring transaction the connection of an enclosing {@link ConnectionScope} is borrowed.
    * @return
    */
   private Mono<Connection> openConnection() {
-    this.connection = ConnectionFactoryUtils.getConnection(connectionFactory);
-    this.autoCommit = this.connection.map(Connection::isAutoCommit);
-    this.isConnectionTransactional = this.connection.flatMap(this::isConnectionTransactional);
+    Mono<Connection> scoped = isAutoCommit()
+        .filter(Boolean::booleanValue)
+        .flatMap(noTransaction -> ConnectionScope.currentConnection(connectionFactory))
+        .doOnNext(c -> borrowed = true);
+    return scoped.switchIfEmpty(ConnectionFactoryUtils.getConnection(connectionFactory))
+        .doOnNext(c -> {
+          connectionRef.set(c);
+          LOGGER.debug(() -> "R2DBC Connection [" + c + "] will be managed by Spring");
+        });
+  }
 
-    LOGGER.debug(() -> "R2DBC Connection [" + this.connection + "] will" + "be managed by Spring");
-    return this.connection;
+  private synchronized void resetConnection() {
+    if (connectionRef.get() == null) {
+      this.connection = null;
+    }
+  }
+
+  /**
+   * Looks the transaction synchronization of the caller up once per session, statements read the autocommit
+   * and timeout state from it instead of the Reactor context.
+   */
+  private synchronized Mono<Optional<TransactionSynchronizationManager>> getSynchronization() {
+    if (this.synchronization == null) {
+      this.synchronization = TransactionSynchronizationManager.forCurrentTransaction()
+          .map(Optional::of)
+          .onErrorResume(NoTransactionException.class, e -> Mono.just(Optional.empty()))
+          .cache();
+    }
+    return this.synchronization;
+  }
+
+  private synchronized boolean isReleased() {
+    // nothing to end once the connection went back, see releaseConnection()
+    return this.connection == null && connectionRef.get() == null;
   }
 
   private void validConnectionRef(){
@@ -103,6 +131,9 @@ public class SpringManagedReactiveTransaction implements ReactiveTransaction {
    */
   @Override
   public Mono<Void> commit() {
+    if (isReleased()) {
+      return Mono.empty();
+    }
     if(connection == null){
       throw new ReactiveMybatisException("connection is null when committing");
     }
@@ -140,8 +171,15 @@ public class SpringManagedReactiveTransaction implements ReactiveTransaction {
    */
   @Override
   public Mono<Void> close() {
+    if (isReleased()) {
+      return Mono.empty();
+    }
     validConnectionRef();
-    return ConnectionFactoryUtils.releaseConnection(connectionRef.get(), this.connectionFactory);
+    if (borrowed) {
+      // the connection of a ConnectionScope is closed by the scope
+      return Mono.empty();
+    }
+    return release(connectionRef.get());
   }
 
   /**
@@ -153,11 +191,46 @@ public class SpringManagedReactiveTransaction implements ReactiveTransaction {
     return getConnectionHolder().filter(ResourceHolderSupport::hasTimeout).map(ConnectionHolder::getTimeToLiveInSeconds);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Mono<Boolean> isAutoCommit() {
+    return getSynchronization()
+        .map(synchronizationManager -> synchronizationManager.map(it -> !it.isActualTransactionActive()).orElse(true));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Mono<Void> releaseConnection() {
+    Connection c = connectionRef.getAndSet(null);
+    if (c == null) {
+      return Mono.empty();
+    }
+    synchronized (this) {
+      this.connection = null;
+    }
+    if (borrowed) {
+      borrowed = false;
+      return Mono.empty();
+    }
+    LOGGER.debug(() -> "Releasing R2DBC Connection [" + c + "]");
+    return release(c);
+  }
+
+  private Mono<Void> release(Connection c) {
+    // ConnectionFactoryUtils closes the connection of a Spring transaction as well, its transaction manager ends it
+    return isConnectionTransactional(c)
+        .flatMap(transactional -> transactional ? Mono.<Void>empty() : ConnectionFactoryUtils.releaseConnection(c, this.connectionFactory));
+  }
+
   private Mono<ConnectionHolder> getConnectionHolder(){
-    return TransactionSynchronizationManager.forCurrentTransaction()
+    return getSynchronization()
+            .flatMap(synchronizationManager -> Mono.justOrEmpty(synchronizationManager))
             .filter(TransactionSynchronizationManager::isSynchronizationActive)
-            .flatMap((synchronizationManager) -> Mono.justOrEmpty((ConnectionHolder) synchronizationManager.getResource(connectionFactory)))
-            .onErrorResume(NoTransactionException.class,e->Mono.empty());
+            .flatMap((synchronizationManager) -> Mono.justOrEmpty((ConnectionHolder) synchronizationManager.getResource(connectionFactory)));
   }
 
   public Mono<Boolean> isConnectionTransactional(Connection con) {
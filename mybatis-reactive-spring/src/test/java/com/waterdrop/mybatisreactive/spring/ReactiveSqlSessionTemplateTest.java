@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.spring;
+
+import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
+import com.waterdrop.mybatisreactive.session.ReactiveSqlSessionFactory;
+import org.apache.ibatis.session.ExecutorType;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveSqlSessionTemplateTest {
+
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+  private final ReactiveSqlSessionTemplate template = new ReactiveSqlSessionTemplate(sessionFactory(), ExecutorType.SIMPLE, null);
+
+  @Test
+  void shouldCommitAndCloseSessionOfCompletedCall() {
+    StepVerifier.create(template.selectList("selectUsers")).expectNext(1, 2, 3).verifyComplete();
+
+    assertThat(calls).containsExactly("commit", "close");
+  }
+
+  @Test
+  void shouldOnlyCloseSessionOfCancelledCall() {
+    StepVerifier.create(template.selectList("selectUsers").take(1)).expectNext(1).verifyComplete();
+
+    assertThat(calls).containsExactly("close");
+  }
+
+  private ReactiveSqlSessionFactory sessionFactory() {
+    ReactiveSqlSession session = (ReactiveSqlSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class[] {ReactiveSqlSession.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "selectList":
+              return Flux.range(1, 3);
+            case "commit":
+            case "close":
+              return Mono.fromRunnable(() -> calls.add(method.getName()));
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+    return (ReactiveSqlSessionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class[] {ReactiveSqlSessionFactory.class}, (proxy, method, args) -> {
+          if (method.getName().equals("openSession")) {
+            return session;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.spring.transaction;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpringManagedReactiveTransactionTest {
+
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+  private final ConnectionFactory connectionFactory = connectionFactory();
+
+  @Test
+  void shouldGetConnectionOncePerSession() {
+    SpringManagedReactiveTransaction transaction = new SpringManagedReactiveTransaction(connectionFactory);
+
+    Connection connection = transaction.getConnection().block();
+    assertThat(transaction.getConnection().block()).isSameAs(connection);
+    StepVerifier.create(transaction.close()).verifyComplete();
+    assertThat(calls).containsExactly("connection1.create", "connection1.close");
+  }
+
+  @Test
+  void shouldGetAnotherConnectionOnceReleased() {
+    SpringManagedReactiveTransaction transaction = new SpringManagedReactiveTransaction(connectionFactory);
+
+    Connection first = transaction.getConnection().block();
+    StepVerifier.create(transaction.releaseConnection()).verifyComplete();
+    assertThat(transaction.getConnection().block()).isNotSameAs(first);
+    StepVerifier.create(transaction.releaseConnection()).verifyComplete();
+    StepVerifier.create(transaction.close()).verifyComplete();
+    assertThat(calls).containsExactly("connection1.create", "connection1.close", "connection2.create", "connection2.close");
+  }
+
+  @Test
+  void shouldCommitAutomaticallyOutsideSpringTransaction() {
+    SpringManagedReactiveTransaction transaction = new SpringManagedReactiveTransaction(connectionFactory);
+
+    StepVerifier.create(transaction.isAutoCommit()).expectNext(true).verifyComplete();
+    StepVerifier.create(transaction.getConnection().flatMap(transaction::isConnectionTransactional))
+        .expectNext(false)
+        .verifyComplete();
+    StepVerifier.create(transaction.getTimeout()).verifyComplete();
+  }
+
+  @Test
+  void shouldUseConnectionBoundToSpringTransaction() {
+    DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+    definition.setTimeout(5);
+    TransactionalOperator operator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory), definition);
+    SpringManagedReactiveTransaction transaction = new SpringManagedReactiveTransaction(connectionFactory);
+
+    StepVerifier.create(operator.transactional(transaction.getConnection()
+        .flatMap(connection -> transaction.isConnectionTransactional(connection)
+            .zipWith(transaction.isAutoCommit(), (transactional, autoCommit) -> Arrays.asList(transactional, autoCommit)))
+        .zipWith(transaction.getTimeout(), (flags, timeout) -> Arrays.asList(flags.get(0), flags.get(1), timeout > 0 && timeout <= 5))
+        .flatMap(result -> transaction.close().thenReturn(result))))
+        .expectNext(Arrays.asList(true, false, true))
+        .verifyComplete();
+    // the Spring transaction ends the connection, the session only hands it back
+    assertThat(calls).containsExactly("connection1.create", "connection1.setAutoCommit", "connection1.beginTransaction",
+        "connection1.commitTransaction", "connection1.setAutoCommit", "connection1.close");
+  }
+
+  @Test
+  void shouldNotCloseConnectionOfSpringTransactionOnRelease() {
+    TransactionalOperator operator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    SpringManagedReactiveTransaction transaction = new SpringManagedReactiveTransaction(connectionFactory);
+
+    StepVerifier.create(operator.transactional(transaction.getConnection()
+        .flatMap(connection -> transaction.releaseConnection().then(transaction.getConnection()).map(again -> again == connection))))
+        .expectNext(true)
+        .verifyComplete();
+    assertThat(calls).containsExactly("connection1.create", "connection1.setAutoCommit", "connection1.beginTransaction",
+        "connection1.commitTransaction", "connection1.setAutoCommit", "connection1.close");
+  }
+
+  private ConnectionFactory connectionFactory() {
+    ConnectionFactoryMetadata metadata = () -> "stub";
+    return (ConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ConnectionFactory.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "create":
+              return Mono.fromSupplier(() -> {
+                String name = "connection" + (calls.stream().filter(call -> call.endsWith(".create")).count() + 1);
+                calls.add(name + ".create");
+                return connection(name);
+              });
+            case "getMetadata":
+              return metadata;
+            // the factory is the key of the resources bound to a Spring transaction
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return "stub";
+          }
+        });
+  }
+
+  private Connection connection(String name) {
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "toString":
+              return name;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "isAutoCommit":
+              return true;
+            default:
+              if (Publisher.class.isAssignableFrom(method.getReturnType())) {
+                return Mono.<Void>empty().doOnSubscribe(subscription -> calls.add(name + "." + method.getName()));
+              }
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+}
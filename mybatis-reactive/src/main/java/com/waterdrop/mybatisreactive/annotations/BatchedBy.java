@@ -0,0 +1,77 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Links a single-key select to a select that takes a collection of keys, so that calls arriving within a short window
+ * are merged into one {@code IN (...)} query and the rows are handed back to each caller by key.
+ * <p>
+ * The batch statement receives the distinct keys as its parameter (a {@code list}) and must return the rows whose
+ * {@link #keyProperty()} equals one of them. A caller whose key has no row completes empty.
+ *
+ * <p>
+ * <b>How to use:</b>
+ *
+ * <pre>
+ * public interface UserMapper {
+ *   &#064;BatchedBy("selectByIds")
+ *   Mono&lt;User&gt; selectById(Long id);
+ *
+ *   &#064;Select("&lt;script&gt;SELECT * FROM users WHERE id IN &lt;foreach collection='list' item='id' open='(' separator=',' close=')'&gt;#{id}&lt;/foreach&gt;&lt;/script&gt;")
+ *   Flux&lt;User&gt; selectByIds(List&lt;Long&gt; ids);
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface BatchedBy {
+
+  /**
+   * Returns the id of the batch statement, relative to the mapper namespace unless it contains a dot.
+   *
+   * @return the batch statement id
+   */
+  String value();
+
+  /**
+   * Returns the property of a result row holding its key.
+   *
+   * @return the key property
+   */
+  String keyProperty() default "id";
+
+  /**
+   * Returns the maximum number of keys sent in one batch.
+   *
+   * @return the maximum batch size
+   */
+  int maxSize() default 100;
+
+  /**
+   * Returns how long in milliseconds the first key of a batch waits for others.
+   *
+   * @return the batching window
+   */
+  long window() default 2;
+
+}
@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a select whose concurrent executions with the same parameters share a single database round trip.
+ * <p>
+ * While an execution is in flight, any other autocommit session running the statement with an equal cache key
+ * subscribes to it and receives the same materialized result; nothing is kept once it completes. The shared execution
+ * runs on a connection of its own, so it goes on when the session that started it cancels or closes. Sessions in a
+ * transaction always run the statement on their own connection. Do not mutate the returned objects.
+ *
+ * <p>
+ * <b>How to use:</b>
+ *
+ * <pre>
+ * public interface UserMapper {
+ *   &#064;Coalesce
+ *   &#064;Select("SELECT * FROM users WHERE id = #{id}")
+ *   Mono&lt;User&gt; selectById(Long id);
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Coalesce {
+}
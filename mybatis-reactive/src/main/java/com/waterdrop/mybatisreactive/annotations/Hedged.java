@@ -0,0 +1,60 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Hedges a select: when it has not returned its first row after a delay, the same select is started on a second
+ * connection and whichever answers first is used, the other one is cancelled. Only selects running outside a
+ * transaction are hedged, and at most
+ * {@link com.waterdrop.mybatisreactive.session.ReactiveConfiguration#setHedgeBudget the configured share} of them.
+ *
+ * <p>
+ * <b>How to use:</b>
+ *
+ * <pre>
+ * public interface UserMapper {
+ *   &#064;Hedged(percentile = 0.95)
+ *   &#064;Select("SELECT * FROM users WHERE id = #{id}")
+ *   Mono&lt;User&gt; selectById(Long id);
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Hedged {
+
+  /**
+   * Returns a fixed delay in milliseconds before hedging, when not positive the delay follows {@link #percentile()}.
+   *
+   * @return the hedge delay
+   */
+  long delay() default 0;
+
+  /**
+   * Returns the percentile of the observed time to the first row used as delay.
+   *
+   * @return the percentile, between 0 and 1
+   */
+  double percentile() default 0.95;
+
+}
@@ -0,0 +1,70 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a large select that is read as concurrent range scans of a key, see
+ * {@link com.waterdrop.mybatisreactive.mapping.PartitionedScanPolicy}.
+ * <p>
+ * The ranges run on connections of their own, so they only apply to sessions that commit automatically;
+ * inside a transaction the select runs as usual.
+ *
+ * <p>
+ * <b>How to use:</b>
+ *
+ * <pre>
+ * public interface OrderMapper {
+ *   &#064;PartitionedScan(column = "id", partitions = 8, ordered = true)
+ *   &#064;Select("SELECT * FROM orders WHERE created_at &lt; #{before} ORDER BY id")
+ *   Flux&lt;Order&gt; export(LocalDateTime before);
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface PartitionedScan {
+
+  /**
+   * The result column to split into ranges.
+   */
+  String column();
+
+  int partitions() default 4;
+
+  /**
+   * Whether the rows are delivered in key order, range after range.
+   */
+  boolean ordered() default false;
+
+  /**
+   * Whether the key order is descending, for an ordered select sorted by its key descending.
+   */
+  boolean descending() default false;
+
+  /**
+   * Id of a statement selecting sampled keys to split at their quantiles, by default the ranges are split evenly
+   * between the least and the greatest key.
+   */
+  String sampleStatement() default "";
+
+}
@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a select that may read from a replica of the environment even when it runs inside a transaction.
+ * <p>
+ * Selects of sessions that commit automatically go to a replica anyway, until the session writes. Only use it for
+ * reads that need not see the work of the enclosing transaction and that tolerate replication lag.
+ *
+ * <p>
+ * <b>How to use:</b>
+ *
+ * <pre>
+ * public interface CountryMapper {
+ *   &#064;ReadOnly
+ *   &#064;Select("SELECT * FROM countries")
+ *   Flux&lt;Country&gt; selectAll();
+ * }
+ * </pre>
+ *
+ * @see com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment#getReplicas()
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ReadOnly {
+}
@@ -0,0 +1,76 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Retries a select that failed with a transient error before returning any row, on a new connection each time.
+ * Only selects running outside a transaction are retried. It overrides
+ * {@link com.waterdrop.mybatisreactive.session.ReactiveConfiguration#setDefaultRetryPolicy default retry policy},
+ * {@code @Retryable(maxAttempts = 1)} disables retries of a statement.
+ *
+ * <p>
+ * <b>How to use:</b>
+ *
+ * <pre>
+ * public interface UserMapper {
+ *   &#064;Retryable(maxAttempts = 3, backoff = 50)
+ *   &#064;Select("SELECT * FROM users WHERE id = #{id}")
+ *   Mono&lt;User&gt; selectById(Long id);
+ * }
+ * </pre>
+ *
+ * @see com.waterdrop.mybatisreactive.retry.RetryPolicy
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Retryable {
+
+  /**
+   * Returns the number of attempts including the first one.
+   *
+   * @return the maximum attempts
+   */
+  int maxAttempts() default 3;
+
+  /**
+   * Returns the backoff in milliseconds before the first retry, doubled for each following one.
+   *
+   * @return the minimum backoff
+   */
+  long backoff() default 100;
+
+  /**
+   * Returns the upper bound of the backoff in milliseconds.
+   *
+   * @return the maximum backoff
+   */
+  long maxBackoff() default 2000;
+
+  /**
+   * Returns the share of each backoff that is randomized.
+   *
+   * @return the jitter factor
+   */
+  double jitter() default 0.5;
+
+}
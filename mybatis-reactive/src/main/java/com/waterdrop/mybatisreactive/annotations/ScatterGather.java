@@ -0,0 +1,56 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.annotations;
+
+import com.waterdrop.mybatisreactive.mapping.ScatterGatherPolicy;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a select without a shard key that runs on every shard of the environment, see {@link ScatterGatherPolicy}.
+ * <p>
+ * {@link #orderBy()} has to match the {@code ORDER BY} of the statement, in terms of result properties, for the rows
+ * of the shards to be merged in order.
+ *
+ * <p>
+ * <b>How to use:</b>
+ *
+ * <pre>
+ * public interface UserMapper {
+ *   &#064;ScatterGather(orderBy = "createdAt DESC, id")
+ *   &#064;Select("SELECT * FROM users WHERE name LIKE #{pattern} ORDER BY created_at DESC, id")
+ *   Flux&lt;User&gt; search(String pattern, RowBounds rowBounds);
+ *
+ *   &#064;ScatterGather(aggregate = ScatterGatherPolicy.Aggregate.COUNT)
+ *   &#064;Select("SELECT COUNT(*) FROM users")
+ *   Mono&lt;Long&gt; count();
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ScatterGather {
+
+  String orderBy() default "";
+
+  ScatterGatherPolicy.Aggregate aggregate() default ScatterGatherPolicy.Aggregate.NONE;
+
+}
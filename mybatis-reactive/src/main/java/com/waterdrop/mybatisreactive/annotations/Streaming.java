@@ -0,0 +1,45 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Executes a select returning {@code Flux} as a cursor: rows are fetched in batches of the fetch size as the
+ * subscriber requests them and are never kept in the local cache, so arbitrarily large results can be streamed with
+ * bounded memory. See {@link com.waterdrop.mybatisreactive.session.ReactiveSqlSession#selectCursor(String, Object)}.
+ *
+ * <p>
+ * <b>How to use:</b>
+ *
+ * <pre>
+ * public interface OrderMapper {
+ *   &#064;Streaming
+ *   &#064;Options(fetchSize = 500)
+ *   &#064;Select("SELECT * FROM orders")
+ *   Flux&lt;Order&gt; exportAll();
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Streaming {
+}
@@ -0,0 +1,186 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.binding;
+
+import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.ContextView;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the keys of concurrent single-key selects and resolves them with one batch select.
+ * A batch is dispatched when it reaches its maximum size or when its window elapses, whichever comes first.
+ * Only callers of the same session with an equal Reactor context share a batch, so a batch never runs in the
+ * transaction of another caller; it runs within the subscription of its callers.
+ */
+class BatchLoader {
+
+  private final Configuration configuration;
+  private final String statement;
+  private final String keyProperty;
+  private final int maxSize;
+  private final Duration window;
+
+  private final Map<BatchKey, Batch> current = new HashMap<>();
+
+  BatchLoader(Configuration configuration, String statement, String keyProperty, int maxSize, Duration window) {
+    this.configuration = configuration;
+    this.statement = statement;
+    this.keyProperty = keyProperty;
+    this.maxSize = maxSize;
+    this.window = window;
+  }
+
+  Mono<Object> load(ReactiveSqlSession sqlSession, Object key) {
+    return Mono.deferContextual(context -> {
+      Batch batch = enqueue(new BatchKey(sqlSession, context), key);
+      return batch.dispatched.asMono()
+          .then(batch.rows)
+          .flatMap(rowsByKey -> match(rowsByKey, key));
+    });
+  }
+
+  private Batch enqueue(BatchKey batchKey, Object key) {
+    Batch batch;
+    boolean full = false;
+    synchronized (this) {
+      batch = current.get(batchKey);
+      if (batch == null) {
+        Batch created = new Batch(batchKey.sqlSession);
+        batch = created;
+        current.put(batchKey, created);
+        Schedulers.parallel().schedule(() -> flush(batchKey, created), window.toNanos(), TimeUnit.NANOSECONDS);
+      }
+      batch.keys.add(key);
+      if (batch.keys.size() >= maxSize) {
+        current.remove(batchKey);
+        full = true;
+      }
+    }
+    if (full) {
+      batch.dispatched.tryEmitEmpty();
+    }
+    return batch;
+  }
+
+  private void flush(BatchKey batchKey, Batch batch) {
+    synchronized (this) {
+      if (!current.remove(batchKey, batch)) {
+        // already dispatched because it was full
+        return;
+      }
+    }
+    batch.dispatched.tryEmitEmpty();
+  }
+
+  private Map<Object, List<Object>> groupByKey(List<Object> rows) {
+    Map<Object, List<Object>> rowsByKey = new HashMap<>();
+    for (Object row : rows) {
+      MetaObject metaObject = configuration.newMetaObject(row);
+      Object key = normalize(metaObject.getValue(keyProperty));
+      rowsByKey.computeIfAbsent(key, k -> new ArrayList<>(1)).add(row);
+    }
+    return rowsByKey;
+  }
+
+  private Mono<Object> match(Map<Object, List<Object>> rowsByKey, Object key) {
+    List<Object> matches = rowsByKey.get(normalize(key));
+    if (matches == null) {
+      return Mono.empty();
+    } else if (matches.size() == 1) {
+      return Mono.just(matches.get(0));
+    }
+    return Mono.error(new TooManyResultsException("Expected one result (or null) for key " + key
+        + " of batch statement " + statement + ", but found: " + matches.size()));
+  }
+
+  /**
+   * Integral keys are compared by value, as the driver may map a key column to another numeric type than the caller.
+   */
+  private static Object normalize(Object key) {
+    if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+      return ((Number) key).longValue();
+    }
+    if (key instanceof BigInteger && ((BigInteger) key).bitLength() < 64) {
+      return ((BigInteger) key).longValue();
+    }
+    if (key instanceof BigDecimal && ((BigDecimal) key).scale() <= 0 && ((BigDecimal) key).precision() < 19) {
+      return ((BigDecimal) key).longValue();
+    }
+    return key;
+  }
+
+  private final class Batch {
+    private final Set<Object> keys = new LinkedHashSet<>();
+    private final Sinks.Empty<Void> dispatched = Sinks.empty();
+    private final Mono<Map<Object, List<Object>>> rows;
+
+    Batch(ReactiveSqlSession sqlSession) {
+      // subscribed by the first caller once dispatched, the others receive the same rows
+      this.rows = Mono.defer(() -> sqlSession.selectList(statement, new ArrayList<>(keys)).collectList())
+          .map(BatchLoader.this::groupByKey)
+          .cache();
+    }
+  }
+
+  /**
+   * Callers share a batch only when they use the same session and their Reactor contexts hold the same entries,
+   * e.g. the same Spring transaction.
+   */
+  private static final class BatchKey {
+    private final ReactiveSqlSession sqlSession;
+    private final Map<Object, Object> context;
+
+    BatchKey(ReactiveSqlSession sqlSession, ContextView context) {
+      this.sqlSession = sqlSession;
+      this.context = context.stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BatchKey)) {
+        return false;
+      }
+      BatchKey other = (BatchKey) o;
+      return sqlSession == other.sqlSession && context.equals(other.context);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(sqlSession) + context.hashCode();
+    }
+  }
+
+}
@@ -15,8 +15,11 @@
  */
 package com.waterdrop.mybatisreactive.binding;
 
+import com.waterdrop.mybatisreactive.annotations.BatchedBy;
+import com.waterdrop.mybatisreactive.annotations.Streaming;
 import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
 import com.waterdrop.mybatisreactive.reflection.SuspendParamNameResolver;
+import com.waterdrop.mybatisreactive.session.ReactiveResultHandler;
 import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
 import com.waterdrop.mybatisreactive.toolkit.KotlinDetector;
 import com.waterdrop.mybatisreactive.toolkit.KotlinReflectionUtils;
@@ -26,15 +29,14 @@ import kotlinx.coroutines.reactor.MonoKt;
 import org.apache.ibatis.annotations.Flush;
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.binding.BindingException;
-import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.TypeParameterResolver;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
-import org.apache.ibatis.session.SqlSession;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -43,6 +45,8 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -58,10 +62,37 @@ public class ReactiveMapperMethod {
 
   private final SqlCommand command;
   private final MethodSignature method;
+  private final BatchedBy batchedBy;
+  private final String batchStatement;
+  private final BatchLoader batchLoader;
 
   public ReactiveMapperMethod(Class<?> mapperInterface, Method method, Configuration config) {
     this.command = new SqlCommand(config, mapperInterface, method);
     this.method = new MethodSignature(config, mapperInterface, method);
+    this.batchedBy = method.getAnnotation(BatchedBy.class);
+    if (batchedBy != null) {
+      this.batchStatement = resolveBatchStatement(config, mapperInterface, method);
+      this.batchLoader = new BatchLoader(config, batchStatement, batchedBy.keyProperty(), batchedBy.maxSize(),
+          Duration.ofMillis(batchedBy.window()));
+    } else {
+      this.batchStatement = null;
+      this.batchLoader = null;
+    }
+  }
+
+  private String resolveBatchStatement(Configuration config, Class<?> mapperInterface, Method method) {
+    String statement = batchedBy.value().contains(".") ? batchedBy.value() : mapperInterface.getName() + "." + batchedBy.value();
+    String methodName = mapperInterface.getName() + "." + method.getName();
+    if (command.getType() != SqlCommandType.SELECT || this.method.returnsMany() || this.method.returnsVoid()) {
+      throw new BindingException("@BatchedBy requires a select returning a single row, but " + methodName + " is not");
+    }
+    if (this.method.hasRowBounds() || this.method.hasResultHandler()) {
+      throw new BindingException("@BatchedBy does not support RowBounds or ResultHandler parameters on " + methodName);
+    }
+    if (!config.hasStatement(statement) || config.getMappedStatement(statement).getSqlCommandType() != SqlCommandType.SELECT) {
+      throw new BindingException("Batch select " + statement + " of " + methodName + " not found");
+    }
+    return statement;
   }
 
   public Object execute(ReactiveSqlSession sqlSession, Object[] args) {
@@ -84,17 +115,18 @@ public class ReactiveMapperMethod {
       }
       case SELECT:
         if (method.returnsVoid() && method.hasResultHandler()) {
-          //todo executeWithResultHandler
-//          executeWithResultHandler(sqlSession, args);
-//          result = Mono.empty();
-          throw new ReactiveMybatisException("don`t support executeWithResultHandler");
+          result = executeWithResultHandler(sqlSession, args);
+        } else if (method.returnsCursor()) {
+          result = executeForCursor(sqlSession, args);
+        } else if (method.returnsMap() && method.returnsMany()) {
+          result = executeForMapEntries(sqlSession, args);
         } else if (method.returnsMany()) {
           result = executeForMany(sqlSession, args);
-          //TODO method return other type
-        /*} else if (method.returnsMap()) {
+        } else if (method.returnsMap()) {
           result = executeForMap(sqlSession, args);
-        } else if (method.returnsCursor()) {
-          result = executeForCursor(sqlSession, args);*/
+        } else if (batchedBy != null) {
+          Object param = method.convertArgsToSqlCommandParam(args);
+          result = batchLoader.load(sqlSession, param);
         } else {
           Object param = method.convertArgsToSqlCommandParam(args);
           result = sqlSession.selectOne(command.getName(), param);
@@ -147,7 +179,7 @@ public class ReactiveMapperMethod {
     return result;
   }
 
-  /*private void executeWithResultHandler(SqlSession sqlSession, Object[] args) {
+  private Mono<Void> executeWithResultHandler(ReactiveSqlSession sqlSession, Object[] args) {
     MappedStatement ms = sqlSession.getConfiguration().getMappedStatement(command.getName());
     if (!StatementType.CALLABLE.equals(ms.getStatementType())
         && void.class.equals(ms.getResultMaps().get(0).getType())) {
@@ -158,11 +190,11 @@ public class ReactiveMapperMethod {
     Object param = method.convertArgsToSqlCommandParam(args);
     if (method.hasRowBounds()) {
       RowBounds rowBounds = method.extractRowBounds(args);
-      sqlSession.select(command.getName(), param, rowBounds, method.extractResultHandler(args));
+      return sqlSession.select(command.getName(), param, rowBounds, method.extractResultHandler(args));
     } else {
-      sqlSession.select(command.getName(), param, method.extractResultHandler(args));
+      return sqlSession.select(command.getName(), param, method.extractResultHandler(args));
     }
-  }*/
+  }
 
   private <E> Publisher<Object> executeForMany(ReactiveSqlSession sqlSession, Object[] args) {
     Flux<Object> result;
@@ -184,8 +216,8 @@ public class ReactiveMapperMethod {
     return result;
   }
 
-  private <T> Cursor<T> executeForCursor(SqlSession sqlSession, Object[] args) {
-    Cursor<T> result;
+  private <T> Flux<T> executeForCursor(ReactiveSqlSession sqlSession, Object[] args) {
+    Flux<T> result;
     Object param = method.convertArgsToSqlCommandParam(args);
     if (method.hasRowBounds()) {
       RowBounds rowBounds = method.extractRowBounds(args);
@@ -217,8 +249,8 @@ public class ReactiveMapperMethod {
     }
   }
 
-  private <K, V> Map<K, V> executeForMap(SqlSession sqlSession, Object[] args) {
-    Map<K, V> result;
+  private <K, V> Mono<Map<K, V>> executeForMap(ReactiveSqlSession sqlSession, Object[] args) {
+    Mono<Map<K, V>> result;
     Object param = method.convertArgsToSqlCommandParam(args);
     if (method.hasRowBounds()) {
       RowBounds rowBounds = method.extractRowBounds(args);
@@ -229,6 +261,19 @@ public class ReactiveMapperMethod {
     return result;
   }
 
+  private <V> Flux<Map.Entry<Object, V>> executeForMapEntries(ReactiveSqlSession sqlSession, Object[] args) {
+    Flux<V> rows;
+    Object param = method.convertArgsToSqlCommandParam(args);
+    if (method.hasRowBounds()) {
+      RowBounds rowBounds = method.extractRowBounds(args);
+      rows = sqlSession.selectList(command.getName(), param, rowBounds);
+    } else {
+      rows = sqlSession.selectList(command.getName(), param);
+    }
+    Configuration config = sqlSession.getConfiguration();
+    return rows.map(row -> new AbstractMap.SimpleImmutableEntry<>(config.newMetaObject(row).getValue(method.getMapKey()), row));
+  }
+
   public static class ParamMap<V> extends HashMap<String, V> {
 
     private static final long serialVersionUID = -2212268410512043556L;
@@ -338,12 +383,12 @@ public class ReactiveMapperMethod {
       this.returnsReactiveType = Publisher.class.equals(this.returnType) || Mono.class.equals(this.returnType) || Flux.class.equals(this.returnType);
       this.returnsVoid = (this.suspendedDeclaredMethod && Unit.class.equals(this.returnType)) || (this.returnsReactiveType && Void.class.equals(this.returnActualGenericType));
       this.returnsMany = Flux.class.equals(this.returnType) || (this.suspendedDeclaredMethod && List.class.equals(this.returnType));
-      this.returnsCursor = Cursor.class.equals(this.returnType);
+      this.returnsCursor = Flux.class.equals(this.returnType) && method.isAnnotationPresent(Streaming.class);
       this.returnsOptional = Optional.class.equals(this.returnType);
       this.mapKey = getMapKey(method);
       this.returnsMap = this.mapKey != null;
       this.rowBoundsIndex = getUniqueParamIndex(method, RowBounds.class);
-      this.resultHandlerIndex = getUniqueParamIndex(method, ResultHandler.class);
+      this.resultHandlerIndex = getResultHandlerIndex(method);
       this.paramNameResolver = new SuspendParamNameResolver(configuration, method, suspendedDeclaredMethod);
       this.method = method;
       if(this.suspendedDeclaredMethod && this.returnsReactiveType){
@@ -370,8 +415,18 @@ public class ReactiveMapperMethod {
       return resultHandlerIndex != null;
     }
 
-    public ResultHandler extractResultHandler(Object[] args) {
-      return hasResultHandler() ? (ResultHandler) args[resultHandlerIndex] : null;
+    /**
+     * Returns the result handler argument, a MyBatis {@link ResultHandler} is adapted to a {@link ReactiveResultHandler}.
+     */
+    @SuppressWarnings("unchecked")
+    public ReactiveResultHandler<Object> extractResultHandler(Object[] args) {
+      if (!hasResultHandler()) {
+        return null;
+      }
+      Object resultHandler = args[resultHandlerIndex];
+      return resultHandler instanceof ResultHandler
+          ? ReactiveResultHandler.of((ResultHandler<Object>) resultHandler)
+          : (ReactiveResultHandler<Object>) resultHandler;
     }
 
     public Class<?> getReturnType() {
@@ -412,6 +467,15 @@ public class ReactiveMapperMethod {
       return returnsOptional;
     }
 
+    private Integer getResultHandlerIndex(Method method) {
+      Integer index = getUniqueParamIndex(method, ResultHandler.class);
+      Integer reactiveIndex = getUniqueParamIndex(method, ReactiveResultHandler.class);
+      if (index != null && reactiveIndex != null) {
+        throw new BindingException(method.getName() + " cannot have both ResultHandler and ReactiveResultHandler parameters");
+      }
+      return index != null ? index : reactiveIndex;
+    }
+
     private Integer getUniqueParamIndex(Method method, Class<?> paramType) {
       Integer index = null;
       final Class<?>[] argTypes = method.getParameterTypes();
@@ -433,7 +497,11 @@ public class ReactiveMapperMethod {
 
     private String getMapKey(Method method) {
       String mapKey = null;
-      if (Map.class.isAssignableFrom(method.getReturnType())) {
+      // Mono<Map<K, V>> (or Map from a suspend function) collects the rows, Flux<Map.Entry<K, V>> streams them
+      Class<?> resultType = returnsReactiveType ? returnActualGenericType : returnType;
+      boolean keyed = Flux.class.equals(returnType) ? Map.Entry.class.equals(resultType)
+          : resultType != null && Map.class.isAssignableFrom(resultType);
+      if (keyed) {
         final MapKey mapKeyAnnotation = method.getAnnotation(MapKey.class);
         if (mapKeyAnnotation != null) {
           mapKey = mapKeyAnnotation.value();
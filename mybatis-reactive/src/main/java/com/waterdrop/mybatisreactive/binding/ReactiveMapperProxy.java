@@ -16,8 +16,12 @@
 package com.waterdrop.mybatisreactive.binding;
 
 import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransactionalOperator;
 import org.apache.ibatis.reflection.ExceptionUtil;
 import org.apache.ibatis.util.MapUtil;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
 import java.io.Serializable;
 import java.lang.invoke.MethodHandle;
@@ -142,8 +146,19 @@ public class ReactiveMapperProxy<T> implements InvocationHandler, Serializable {
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args, ReactiveSqlSession sqlSession) throws Throwable {
+      // calls inside a ReactiveTransactionalOperator run on the session it bound
+      if (Mono.class.equals(method.getReturnType())) {
+        return Mono.deferContextual(context -> (Mono<?>) mapperMethod.execute(sessionOf(context, sqlSession), args));
+      } else if (Flux.class.equals(method.getReturnType())) {
+        return Flux.deferContextual(context -> (Flux<?>) mapperMethod.execute(sessionOf(context, sqlSession), args));
+      }
       return mapperMethod.execute(sqlSession, args);
     }
+
+    private static ReactiveSqlSession sessionOf(ContextView context, ReactiveSqlSession sqlSession) {
+      ReactiveSqlSession current = ReactiveTransactionalOperator.currentSession(context, sqlSession.getConfiguration());
+      return current != null ? current : sqlSession;
+    }
   }
 
   private static class DefaultMethodInvoker implements MapperMethodInvoker {
@@ -15,6 +15,8 @@
  */
 package com.waterdrop.mybatisreactive.binding;
 
+import com.waterdrop.mybatisreactive.builder.annotation.ReactiveMapperAnnotationBuilder;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
 import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
 import org.apache.ibatis.binding.BindingException;
 import org.apache.ibatis.binding.MapperRegistry;
@@ -69,6 +71,9 @@ public class ReactiveMapperRegistry extends MapperRegistry{
         // mapper parser. If the type is already known, it won't try.
         MapperAnnotationBuilder parser = new MapperAnnotationBuilder(config, type);
         parser.parse();
+        if (config instanceof ReactiveConfiguration) {
+          new ReactiveMapperAnnotationBuilder((ReactiveConfiguration) config, type).parse();
+        }
         loadCompleted = true;
       } finally {
         if (!loadCompleted) {
@@ -0,0 +1,97 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.builder.annotation;
+
+import com.waterdrop.mybatisreactive.annotations.Coalesce;
+import com.waterdrop.mybatisreactive.annotations.Hedged;
+import com.waterdrop.mybatisreactive.annotations.PartitionedScan;
+import com.waterdrop.mybatisreactive.annotations.ReadOnly;
+import com.waterdrop.mybatisreactive.annotations.Retryable;
+import com.waterdrop.mybatisreactive.annotations.ScatterGather;
+import com.waterdrop.mybatisreactive.mapping.PartitionedScanPolicy;
+import com.waterdrop.mybatisreactive.mapping.ScatterGatherPolicy;
+import com.waterdrop.mybatisreactive.retry.RetryPolicy;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+
+/**
+ * Reads the reactive annotations of a mapper interface, complementing
+ * {@link org.apache.ibatis.builder.annotation.MapperAnnotationBuilder} which only knows the MyBatis ones.
+ */
+public class ReactiveMapperAnnotationBuilder {
+
+  private final ReactiveConfiguration configuration;
+  private final Class<?> type;
+
+  public ReactiveMapperAnnotationBuilder(ReactiveConfiguration configuration, Class<?> type) {
+    this.configuration = configuration;
+    this.type = type;
+  }
+
+  public void parse() {
+    for (Method method : type.getMethods()) {
+      if (method.isBridge() || method.isDefault()) {
+        continue;
+      }
+      parseStatementOptions(method);
+    }
+  }
+
+  private void parseStatementOptions(Method method) {
+    String statementId = type.getName() + "." + method.getName();
+    if (method.isAnnotationPresent(Coalesce.class)) {
+      configuration.getStatementOptions(statementId).setCoalesce(true);
+    }
+    Hedged hedged = method.getAnnotation(Hedged.class);
+    if (hedged != null) {
+      configuration.getStatementOptions(statementId)
+          .setHedged(true)
+          .setHedgeDelay(hedged.delay())
+          .setHedgePercentile(hedged.percentile());
+    }
+    if (method.isAnnotationPresent(ReadOnly.class)) {
+      configuration.getStatementOptions(statementId).setReadOnly(true);
+    }
+    ScatterGather scatterGather = method.getAnnotation(ScatterGather.class);
+    if (scatterGather != null) {
+      configuration.getStatementOptions(statementId).setScatterGather(ScatterGatherPolicy.builder()
+          .orderBy(scatterGather.orderBy())
+          .aggregate(scatterGather.aggregate())
+          .build());
+    }
+    PartitionedScan partitionedScan = method.getAnnotation(PartitionedScan.class);
+    if (partitionedScan != null) {
+      configuration.getStatementOptions(statementId).setPartitionedScan(PartitionedScanPolicy.builder(partitionedScan.column())
+          .partitions(partitionedScan.partitions())
+          .ordered(partitionedScan.ordered())
+          .descending(partitionedScan.descending())
+          .sampleStatement(partitionedScan.sampleStatement())
+          .build());
+    }
+    Retryable retryable = method.getAnnotation(Retryable.class);
+    if (retryable != null) {
+      configuration.getStatementOptions(statementId).setRetryPolicy(RetryPolicy.builder()
+          .maxAttempts(retryable.maxAttempts())
+          .minBackoff(Duration.ofMillis(retryable.backoff()))
+          .maxBackoff(Duration.ofMillis(retryable.maxBackoff()))
+          .jitter(retryable.jitter())
+          .build());
+    }
+  }
+
+}
@@ -16,6 +16,7 @@
 package com.waterdrop.mybatisreactive.builder.xml;
 
 import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
+import com.waterdrop.mybatisreactive.executor.HedgeBudget;
 import com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment;
 import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
 import com.waterdrop.mybatisreactive.transaction.ReactiveTransactionFactory;
@@ -135,7 +136,7 @@ public class ReactiveXMLConfigBuilder extends BaseBuilder {
     }
     Properties props = context.getChildrenAsProperties();
     // Check that all settings are known to the configuration class
-    MetaClass metaConfig = MetaClass.forClass(Configuration.class, localReflectorFactory);
+    MetaClass metaConfig = MetaClass.forClass(configuration.getClass(), localReflectorFactory);
     for (Object key : props.keySet()) {
       if (!metaConfig.hasSetter(String.valueOf(key))) {
         throw new BuilderException("The setting " + key + " is not known.  Make sure you spelled it correctly (case sensitive).");
@@ -276,6 +277,19 @@ public class ReactiveXMLConfigBuilder extends BaseBuilder {
     configuration.setConfigurationFactory(resolveClass(props.getProperty("configurationFactory")));
     configuration.setShrinkWhitespacesInSql(booleanValueOf(props.getProperty("shrinkWhitespacesInSql"), false));
     configuration.setDefaultSqlProviderType(resolveClass(props.getProperty("defaultSqlProviderType")));
+    if (configuration instanceof ReactiveConfiguration) {
+      reactiveSettingsElement((ReactiveConfiguration) configuration, props);
+    }
+  }
+
+  private void reactiveSettingsElement(ReactiveConfiguration configuration, Properties props) {
+    configuration.setLocalCacheSize(integerValueOf(props.getProperty("localCacheSize"), null));
+    configuration.setPipeliningEnabled(booleanValueOf(props.getProperty("pipeliningEnabled"), false));
+    configuration.setReleaseAfterStatement(booleanValueOf(props.getProperty("releaseAfterStatement"), false));
+    String maxHedgeRate = props.getProperty("maxHedgeRate");
+    if (maxHedgeRate != null) {
+      configuration.setHedgeBudget(new HedgeBudget(Double.parseDouble(maxHedgeRate), 10));
+    }
   }
 
   private void environmentsElement(XNode context) throws Exception {
@@ -0,0 +1,70 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking cache SPI used by the reactive executors.
+ * <p>
+ * Any {@link org.apache.ibatis.cache.Cache} declared with {@code <cache/>} is adapted through
+ * {@link ReactiveCacheAdapter}; remote caches can implement this interface directly and be registered with
+ * {@link com.waterdrop.mybatisreactive.session.ReactiveConfiguration#addReactiveCache(ReactiveCache)} under the id of
+ * the mapper namespace they replace.
+ *
+ * @see com.waterdrop.mybatisreactive.cache.impl.TinyLfuCache
+ */
+public interface ReactiveCache {
+
+  /**
+   * @return The identifier of this cache
+   */
+  String getId();
+
+  /**
+   * @param key
+   *          The key
+   * @return The value stored in the cache, or empty on a miss.
+   */
+  Mono<Object> get(Object key);
+
+  /**
+   * @param key
+   *          Can be any object but usually it is a {@link org.apache.ibatis.cache.CacheKey}
+   * @param value
+   *          The result of a select.
+   */
+  Mono<Void> put(Object key, Object value);
+
+  /**
+   * @param key
+   *          The key
+   */
+  Mono<Void> evict(Object key);
+
+  /**
+   * Clears this cache instance.
+   */
+  Mono<Void> clear();
+
+  /**
+   * @return hit, miss and eviction counters, if this cache keeps them
+   */
+  default CacheStats getStats() {
+    return CacheStats.empty();
+  }
+
+}
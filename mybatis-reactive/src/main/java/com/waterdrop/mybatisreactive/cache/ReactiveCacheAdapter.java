@@ -0,0 +1,103 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache;
+
+import com.waterdrop.mybatisreactive.cache.impl.TinyLfuCache;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exposes a synchronous in-memory {@link Cache} as a {@link ReactiveCache}.
+ * Not meant for caches that perform I/O, those should implement {@link ReactiveCache} directly.
+ */
+public class ReactiveCacheAdapter implements ReactiveCache {
+
+  private final Cache delegate;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final TinyLfuCache tinyLfu;
+
+  public ReactiveCacheAdapter(Cache delegate) {
+    this.delegate = delegate;
+    this.tinyLfu = findTinyLfu(delegate);
+  }
+
+  /**
+   * Finds a {@link TinyLfuCache} under the decorators a {@link org.apache.ibatis.mapping.CacheBuilder} wraps it in,
+   * such as the {@link org.apache.ibatis.cache.decorators.LoggingCache}.
+   */
+  private static TinyLfuCache findTinyLfu(Cache cache) {
+    Object current = cache;
+    while (current instanceof Cache) {
+      if (current instanceof TinyLfuCache) {
+        return (TinyLfuCache) current;
+      }
+      MetaObject metaObject = SystemMetaObject.forObject(current);
+      current = metaObject.hasGetter("delegate") ? metaObject.getValue("delegate") : null;
+    }
+    return null;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public Mono<Object> get(Object key) {
+    return Mono.fromSupplier(() -> {
+      Object value = delegate.getObject(key);
+      if (value == null) {
+        misses.increment();
+      } else {
+        hits.increment();
+      }
+      return value;
+    });
+  }
+
+  @Override
+  public Mono<Void> put(Object key, Object value) {
+    return Mono.fromRunnable(() -> delegate.putObject(key, value));
+  }
+
+  @Override
+  public Mono<Void> evict(Object key) {
+    return Mono.fromRunnable(() -> delegate.removeObject(key));
+  }
+
+  @Override
+  public Mono<Void> clear() {
+    return Mono.fromRunnable(delegate::clear);
+  }
+
+  @Override
+  public CacheStats getStats() {
+    if (tinyLfu != null) {
+      return tinyLfu.getStats();
+    }
+    return new CacheStats(hits.sum(), misses.sum(), 0);
+  }
+
+  public Cache getDelegate() {
+    return delegate;
+  }
+
+}
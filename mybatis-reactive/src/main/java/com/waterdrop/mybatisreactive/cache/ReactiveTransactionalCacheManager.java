@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache;
+
+import com.waterdrop.mybatisreactive.cache.decorators.ReactiveTransactionalCache;
+import org.apache.ibatis.cache.CacheKey;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reactive counterpart of {@link org.apache.ibatis.cache.TransactionalCacheManager}.
+ *
+ * @author Clinton Begin
+ */
+public class ReactiveTransactionalCacheManager {
+
+  private final Map<ReactiveCache, ReactiveTransactionalCache> transactionalCaches = new ConcurrentHashMap<>();
+
+  public void clear(ReactiveCache cache) {
+    getTransactionalCache(cache).clear();
+  }
+
+  public Mono<Object> getObject(ReactiveCache cache, CacheKey key) {
+    return getTransactionalCache(cache).getObject(key);
+  }
+
+  public void putObject(ReactiveCache cache, CacheKey key, Object value) {
+    getTransactionalCache(cache).putObject(key, value);
+  }
+
+  public Mono<Void> commit() {
+    return Flux.fromIterable(transactionalCaches.values())
+        .concatMap(ReactiveTransactionalCache::commit)
+        .then();
+  }
+
+  public Mono<Void> rollback() {
+    return Flux.fromIterable(transactionalCaches.values())
+        .concatMap(ReactiveTransactionalCache::rollback)
+        .then();
+  }
+
+  public void discardPendingEntries() {
+    transactionalCaches.values().forEach(ReactiveTransactionalCache::discardPendingEntries);
+  }
+
+  private ReactiveTransactionalCache getTransactionalCache(ReactiveCache cache) {
+    return transactionalCaches.computeIfAbsent(cache, ReactiveTransactionalCache::new);
+  }
+
+}
@@ -0,0 +1,36 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache;
+
+import java.util.Collection;
+
+/**
+ * Calculates the weight of a cache entry, used to bound a cache by size instead of by entry count.
+ */
+@FunctionalInterface
+public interface Weigher {
+
+  /**
+   * Weighs a collection value (usually the list of a select) by its element count and any other value as one.
+   */
+  Weigher ELEMENT_COUNT = (key, value) -> value instanceof Collection ? Math.max(1, ((Collection<?>) value).size()) : 1;
+
+  /**
+   * @return a non-negative weight
+   */
+  int weigh(Object key, Object value);
+
+}
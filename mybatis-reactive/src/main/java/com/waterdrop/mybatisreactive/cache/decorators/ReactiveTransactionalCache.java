@@ -0,0 +1,91 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache.decorators;
+
+import com.waterdrop.mybatisreactive.cache.ReactiveCache;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The 2nd level cache transactional buffer.
+ * <p>
+ * This class holds all cache entries that are to be added to the 2nd level cache during a Session.
+ * Entries are sent to the cache when commit is called or discarded if the Session is rolled back.
+ * Reactive counterpart of {@link org.apache.ibatis.cache.decorators.TransactionalCache}; as no reactive cache blocks
+ * on a miss, entries missed in the cache are not tracked.
+ *
+ * @author Clinton Begin
+ * @author Eduardo Macarron
+ */
+public class ReactiveTransactionalCache {
+
+  private final ReactiveCache delegate;
+  private volatile boolean clearOnCommit;
+  private final Map<Object, Object> entriesToAddOnCommit;
+
+  public ReactiveTransactionalCache(ReactiveCache delegate) {
+    this.delegate = delegate;
+    this.clearOnCommit = false;
+    this.entriesToAddOnCommit = new ConcurrentHashMap<>();
+  }
+
+  public String getId() {
+    return delegate.getId();
+  }
+
+  public Mono<Object> getObject(Object key) {
+    // issue #146
+    return delegate.get(key).filter(object -> !clearOnCommit);
+  }
+
+  public void putObject(Object key, Object object) {
+    entriesToAddOnCommit.put(key, object);
+  }
+
+  public void clear() {
+    clearOnCommit = true;
+    entriesToAddOnCommit.clear();
+  }
+
+  public Mono<Void> commit() {
+    return Mono.defer(() -> clearOnCommit ? delegate.clear() : Mono.<Void>empty())
+        .then(flushPendingEntries())
+        .doOnSuccess(v -> reset());
+  }
+
+  public Mono<Void> rollback() {
+    return Mono.fromRunnable(this::reset);
+  }
+
+  public void discardPendingEntries() {
+    entriesToAddOnCommit.clear();
+  }
+
+  private void reset() {
+    clearOnCommit = false;
+    entriesToAddOnCommit.clear();
+  }
+
+  private Mono<Void> flushPendingEntries() {
+    return Flux.fromIterable(entriesToAddOnCommit.entrySet())
+        .concatMap(entry -> delegate.put(entry.getKey(), entry.getValue()))
+        .then();
+  }
+
+}
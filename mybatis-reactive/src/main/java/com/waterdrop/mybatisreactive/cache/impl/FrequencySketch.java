@@ -0,0 +1,92 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache.impl;
+
+/**
+ * Count-Min sketch with 4-bit saturating counters that estimates how often a key was seen recently.
+ * All counters are halved once the number of increments reaches the sample size, so old popularity fades.
+ * Not thread-safe, callers synchronize.
+ */
+final class FrequencySketch {
+
+  private static final int DEPTH = 4;
+  private static final int MAX_COUNT = 15;
+  private static final int[] SEEDS = {0x97cb3127, 0xc3a5c85c, 0x9ae16a3b, 0x2f90404f};
+
+  private final byte[] table;
+  private final int mask;
+  private final int width;
+  private final int sampleSize;
+  private int additions;
+
+  FrequencySketch(long expectedSize) {
+    int size = (int) Math.min(Math.max(expectedSize, 16), 1 << 24);
+    this.width = Integer.highestOneBit(size - 1) << 1;
+    this.mask = width - 1;
+    this.table = new byte[DEPTH * width];
+    this.sampleSize = 10 * size;
+  }
+
+  int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < DEPTH; i++) {
+      frequency = Math.min(frequency, table[indexOf(hash, i)]);
+    }
+    return frequency;
+  }
+
+  void increment(Object key) {
+    int hash = spread(key.hashCode());
+    int[] indexes = new int[DEPTH];
+    int min = MAX_COUNT;
+    for (int i = 0; i < DEPTH; i++) {
+      indexes[i] = indexOf(hash, i);
+      min = Math.min(min, table[indexes[i]]);
+    }
+    if (min == MAX_COUNT) {
+      return;
+    }
+    // conservative update: only the counters holding the minimum are raised
+    for (int index : indexes) {
+      if (table[index] == min) {
+        table[index]++;
+      }
+    }
+    if (++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (byte) (table[i] >>> 1);
+    }
+    additions >>>= 1;
+  }
+
+  private int indexOf(int hash, int row) {
+    int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+    h ^= h >>> 16;
+    return row * width + (h & mask);
+  }
+
+  private static int spread(int hash) {
+    hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    return (hash >>> 16) ^ hash;
+  }
+
+}
@@ -0,0 +1,400 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache.impl;
+
+import com.waterdrop.mybatisreactive.cache.CacheStats;
+import com.waterdrop.mybatisreactive.cache.Weigher;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-process cache with W-TinyLFU admission.
+ * <p>
+ * New entries enter a small LRU window; entries leaving the window compete with the eviction victim of the segmented
+ * LRU main space and are only admitted when a {@link FrequencySketch} estimates they are used more often.
+ * The cache is bounded by total weight (see {@link Weigher#ELEMENT_COUNT}), and entries may expire a fixed time after
+ * they were written or last read. Expired entries are dropped when read or when they reach the head of their region.
+ * <p>
+ * It can be declared in a mapper with {@code <cache type="TINYLFU">}
+ * and the {@code maximumWeight}, {@code expireAfterWrite} and {@code expireAfterAccess} (milliseconds) properties.
+ */
+public class TinyLfuCache implements Cache {
+
+  private static final long DEFAULT_MAXIMUM_WEIGHT = 1024;
+  private static final double WINDOW_PERCENT = 0.01;
+  private static final double PROTECTED_PERCENT = 0.80;
+
+  private final String id;
+  private final Map<Object, Node> data = new HashMap<>();
+  private final Deque window = new Deque();
+  private final Deque probation = new Deque();
+  private final Deque protectedSegment = new Deque();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  private long maximumWeight = DEFAULT_MAXIMUM_WEIGHT;
+  private long expireAfterWriteNanos;
+  private long expireAfterAccessNanos;
+  private Weigher weigher = Weigher.ELEMENT_COUNT;
+  private LongSupplier ticker = System::nanoTime;
+
+  private FrequencySketch sketch;
+  private long windowWeight;
+  private long probationWeight;
+  private long protectedWeight;
+
+  public TinyLfuCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public synchronized int getSize() {
+    return data.size();
+  }
+
+  @Override
+  public synchronized void putObject(Object key, Object value) {
+    long now = ticker.getAsLong();
+    int weight = weigher.weigh(key, value);
+    if (weight < 0) {
+      throw new CacheException("Weigher of cache " + id + " returned a negative weight for key " + key);
+    }
+    sketch().increment(key);
+    Node node = data.get(key);
+    if (node != null) {
+      node.value = value;
+      node.writeTime = now;
+      node.accessTime = now;
+      addWeight(node.region, weight - node.weight);
+      node.weight = weight;
+      onAccess(node);
+    } else {
+      node = new Node(key, value, weight, now);
+      data.put(key, node);
+      window.addLast(node);
+      windowWeight += weight;
+    }
+    expireEntries(now);
+    evictEntries();
+  }
+
+  @Override
+  public synchronized Object getObject(Object key) {
+    sketch().increment(key);
+    Node node = data.get(key);
+    if (node == null) {
+      missCount.increment();
+      return null;
+    }
+    long now = ticker.getAsLong();
+    if (isExpired(node, now)) {
+      remove(node);
+      evictionCount.increment();
+      missCount.increment();
+      return null;
+    }
+    hitCount.increment();
+    node.accessTime = now;
+    onAccess(node);
+    return node.value;
+  }
+
+  @Override
+  public synchronized Object removeObject(Object key) {
+    Node node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    remove(node);
+    return node.value;
+  }
+
+  @Override
+  public synchronized void clear() {
+    data.clear();
+    window.clear();
+    probation.clear();
+    protectedSegment.clear();
+    windowWeight = 0;
+    probationWeight = 0;
+    protectedWeight = 0;
+  }
+
+  public CacheStats getStats() {
+    return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum());
+  }
+
+  public synchronized long getWeightedSize() {
+    return windowWeight + probationWeight + protectedWeight;
+  }
+
+  public synchronized void setMaximumWeight(long maximumWeight) {
+    if (maximumWeight <= 0) {
+      throw new IllegalArgumentException("maximumWeight must be positive");
+    }
+    this.maximumWeight = maximumWeight;
+    this.sketch = null;
+    evictEntries();
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  /**
+   * @param expireAfterWrite
+   *          milliseconds an entry lives after it was written, zero for no limit
+   */
+  public void setExpireAfterWrite(long expireAfterWrite) {
+    this.expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterWrite);
+  }
+
+  /**
+   * @param expireAfterAccess
+   *          milliseconds an entry lives after it was last read or written, zero for no limit
+   */
+  public void setExpireAfterAccess(long expireAfterAccess) {
+    this.expireAfterAccessNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterAccess);
+  }
+
+  public void setWeigher(Weigher weigher) {
+    this.weigher = weigher;
+  }
+
+  void setTicker(LongSupplier ticker) {
+    this.ticker = ticker;
+  }
+
+  private FrequencySketch sketch() {
+    if (sketch == null) {
+      sketch = new FrequencySketch(maximumWeight);
+    }
+    return sketch;
+  }
+
+  private long windowMaximum() {
+    return Math.max(1, (long) (maximumWeight * WINDOW_PERCENT));
+  }
+
+  private long protectedMaximum() {
+    return (long) ((maximumWeight - windowMaximum()) * PROTECTED_PERCENT);
+  }
+
+  private void onAccess(Node node) {
+    switch (node.region) {
+      case WINDOW:
+        window.moveToBack(node);
+        break;
+      case PROBATION:
+        probation.remove(node);
+        probationWeight -= node.weight;
+        node.region = Region.PROTECTED;
+        protectedSegment.addLast(node);
+        protectedWeight += node.weight;
+        demoteProtected();
+        break;
+      default:
+        protectedSegment.moveToBack(node);
+        break;
+    }
+  }
+
+  private void demoteProtected() {
+    long protectedMaximum = protectedMaximum();
+    while (protectedWeight > protectedMaximum && protectedSegment.first != protectedSegment.last) {
+      Node demoted = protectedSegment.first;
+      protectedSegment.remove(demoted);
+      protectedWeight -= demoted.weight;
+      demoted.region = Region.PROBATION;
+      probation.addLast(demoted);
+      probationWeight += demoted.weight;
+    }
+  }
+
+  private void evictEntries() {
+    long windowMaximum = windowMaximum();
+    // the entries leaving the window now are the admission candidates, they end probation in that order
+    Node candidate = null;
+    while (windowWeight > windowMaximum && window.first != null) {
+      Node moved = window.first;
+      window.remove(moved);
+      windowWeight -= moved.weight;
+      moved.region = Region.PROBATION;
+      probation.addLast(moved);
+      probationWeight += moved.weight;
+      if (candidate == null) {
+        candidate = moved;
+      }
+    }
+    while (getWeightedSize() > maximumWeight) {
+      Node victim = probation.first;
+      Node evicted;
+      if (candidate != null && victim != candidate) {
+        // an entry demoted from protected is no candidate, it was admitted before
+        evicted = sketch().frequency(candidate.key) > sketch().frequency(victim.key) ? victim : candidate;
+      } else if (victim != null) {
+        evicted = victim;
+      } else if (protectedSegment.first != null) {
+        evicted = protectedSegment.first;
+      } else {
+        evicted = window.first;
+      }
+      // whichever lost the duel, the next candidate competes with the next victim
+      Node next = candidate != null ? candidate.next : null;
+      evict(evicted);
+      candidate = next;
+    }
+  }
+
+  private void expireEntries(long now) {
+    if (expireAfterWriteNanos <= 0 && expireAfterAccessNanos <= 0) {
+      return;
+    }
+    expireHead(window, now);
+    expireHead(probation, now);
+    expireHead(protectedSegment, now);
+  }
+
+  private void expireHead(Deque region, long now) {
+    while (region.first != null && isExpired(region.first, now)) {
+      evict(region.first);
+    }
+  }
+
+  private boolean isExpired(Node node, long now) {
+    return (expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos)
+        || (expireAfterAccessNanos > 0 && now - node.accessTime >= expireAfterAccessNanos);
+  }
+
+  private void evict(Node node) {
+    remove(node);
+    evictionCount.increment();
+  }
+
+  private void remove(Node node) {
+    data.remove(node.key);
+    regionOf(node).remove(node);
+    addWeight(node.region, -node.weight);
+  }
+
+  private Deque regionOf(Node node) {
+    switch (node.region) {
+      case WINDOW:
+        return window;
+      case PROBATION:
+        return probation;
+      default:
+        return protectedSegment;
+    }
+  }
+
+  private void addWeight(Region region, long delta) {
+    switch (region) {
+      case WINDOW:
+        windowWeight += delta;
+        break;
+      case PROBATION:
+        probationWeight += delta;
+        break;
+      default:
+        protectedWeight += delta;
+        break;
+    }
+  }
+
+  private enum Region {
+    WINDOW, PROBATION, PROTECTED
+  }
+
+  private static final class Node {
+    private final Object key;
+    private Object value;
+    private int weight;
+    private long writeTime;
+    private long accessTime;
+    private Region region = Region.WINDOW;
+    private Node prev;
+    private Node next;
+
+    Node(Object key, Object value, int weight, long now) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+      this.writeTime = now;
+      this.accessTime = now;
+    }
+  }
+
+  /**
+   * Doubly-linked list in access order, eldest first.
+   */
+  private static final class Deque {
+    private Node first;
+    private Node last;
+
+    void addLast(Node node) {
+      node.prev = last;
+      node.next = null;
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+    }
+
+    void remove(Node node) {
+      if (node.prev == null) {
+        first = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        last = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+    }
+
+    void moveToBack(Node node) {
+      if (node != last) {
+        remove(node);
+        addLast(node);
+      }
+    }
+
+    void clear() {
+      first = null;
+      last = null;
+    }
+  }
+
+}
@@ -16,13 +16,15 @@
 package com.waterdrop.mybatisreactive.executor;
 
 import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
+import com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment;
+import com.waterdrop.mybatisreactive.retry.RetryPolicy;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
 import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
 import io.r2dbc.spi.Connection;
+import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
-import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.*;
-import org.apache.ibatis.executor.statement.StatementUtil;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.mapping.*;
@@ -32,6 +34,7 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.LocalCacheScope;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -39,6 +42,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
 
 import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOLDER;
 
@@ -53,17 +57,21 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
   protected ReactiveExecutor wrapper;
 
   protected ConcurrentLinkedQueue<DeferredLoad> deferredLoads;
-  protected PerpetualCache localCache;
+  protected Cache localCache;
   protected PerpetualCache localOutputParameterCache;
   protected Configuration configuration;
 
   protected int queryStack;
   private boolean closed;
+  private final Object statementLock = new Object();
+  private int runningStatements;
 
   protected BaseReactiveExecutor(Configuration configuration, ReactiveTransaction transaction) {
     this.transaction = transaction;
     this.deferredLoads = new ConcurrentLinkedQueue<>();
-    this.localCache = new PerpetualCache("LocalCache");
+    this.localCache = configuration instanceof ReactiveConfiguration
+        ? ((ReactiveConfiguration) configuration).newLocalCache("LocalCache")
+        : new PerpetualCache("LocalCache");
     this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
     this.closed = false;
     this.configuration = configuration;
@@ -86,7 +94,14 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
         rollback = rollback(forceRollback);
       } finally {
         if (transaction != null) {
-          return rollback.then(transaction.close());
+          // the connection has to go back even if the rollback fails
+          ReactiveTransaction closing = transaction;
+          return rollback
+              .onErrorResume(e -> {
+                log.warn("Unexpected exception on rolling back transaction.  Cause: " + e);
+                return Mono.empty();
+              })
+              .then(Mono.defer(closing::close));
         }
       }
     } catch (SQLException e) {
@@ -107,6 +122,20 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
     return closed;
   }
 
+  @Override
+  public Mono<Void> commit(boolean required) throws SQLException {
+    if (closed) {
+      throw new ExecutorException("Cannot commit, transaction is already closed");
+    }
+    clearLocalCache();
+    flushStatements();
+    if (required) {
+      return transaction.commit();
+    }
+    return Mono.empty();
+  }
+
+  @Override
   public Mono<Void> rollback(boolean required) throws SQLException {
     if (!closed) {
       try {
@@ -139,16 +168,22 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
       throw new ExecutorException("Executor was closed.");
     }
     clearLocalCache();
-    return doUpdate(ms, parameter);
+    return releaseAfterStatement(doUpdate(ms, parameter));
   }
 
   @Override
   public <E> Flux<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
     BoundSql boundSql = ms.getBoundSql(parameter);
-    CacheKey key = null;//createCacheKey(ms, parameter, rowBounds, boundSql);
+    CacheKey key = createCacheKey(ms, parameter, rowBounds, boundSql);
     return query(ms, parameter, rowBounds, resultHandler, key, boundSql);
   }
 
+  @Override
+  public <E> Flux<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+    BoundSql boundSql = ms.getBoundSql(parameter);
+    return releaseAfterStatement(doQueryCursor(ms, parameter, rowBounds, boundSql));
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <E> Flux<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql) throws SQLException {
@@ -185,6 +220,45 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
     return list;
   }
 
+  @Override
+  public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+    if (closed) {
+      throw new ExecutorException("Executor was closed.");
+    }
+    CacheKey cacheKey = new CacheKey();
+    cacheKey.update(ms.getId());
+    cacheKey.update(rowBounds.getOffset());
+    cacheKey.update(rowBounds.getLimit());
+    cacheKey.update(boundSql.getSql());
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
+    // mimic DefaultParameterHandler logic
+    for (ParameterMapping parameterMapping : parameterMappings) {
+      if (parameterMapping.getMode() != ParameterMode.OUT) {
+        Object value;
+        String propertyName = parameterMapping.getProperty();
+        if (boundSql.hasAdditionalParameter(propertyName)) {
+          value = boundSql.getAdditionalParameter(propertyName);
+        } else if (parameterObject == null) {
+          value = null;
+        } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+          value = parameterObject;
+        } else {
+          MetaObject metaObject = configuration.newMetaObject(parameterObject);
+          value = metaObject.getValue(propertyName);
+        }
+        cacheKey.update(value);
+      }
+    }
+    if (configuration instanceof ReactiveConfiguration) {
+      ReactiveEnvironment environment = ((ReactiveConfiguration) configuration).getReactiveEnvironment();
+      if (environment != null) {
+        // issue #176
+        cacheKey.update(environment.getId());
+      }
+    }
+    return cacheKey;
+  }
 
   @Override
   public void clearLocalCache() {
@@ -201,7 +275,7 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
   protected abstract <E> Flux<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException;
 
-  protected abstract <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql)
+  protected abstract <E> Flux<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql)
       throws SQLException;
 
   protected void closeStatement(Statement statement) {
@@ -214,26 +288,6 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
     }
   }
 
-  /**
-   * Apply a transaction timeout.
-   *
-   * @param statement
-   *          a current statement
-   * @throws SQLException
-   *           if a database access error occurs, this method is called on a closed <code>Statement</code>
-   * @since 3.4.0
-   * @see StatementUtil#applyTransactionTimeout(Statement, Integer, Integer)
-   */
-  protected void applyTransactionTimeout(Statement statement) throws SQLException {
-    transaction.getTimeout().doOnNext(timeout->{
-      try {
-        StatementUtil.applyTransactionTimeout(statement, statement.getQueryTimeout(), timeout);
-      } catch (SQLException exception) {
-        throw new ReactiveMybatisException(exception);
-      }
-    });
-  }
-
   private void handleLocallyCachedOutputParameters(MappedStatement ms, CacheKey key, Object parameter, BoundSql boundSql) {
     if (ms.getStatementType() == StatementType.CALLABLE) {
       final Object cachedParameter = localOutputParameterCache.getObject(key);
@@ -255,7 +309,18 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
     Flux<E> list;
     localCache.putObject(key, EXECUTION_PLACEHOLDER);
     try {
-      list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+      if (resultHandler == null && isCoalesced(ms)) {
+        // the shared execution must not depend on the session of the caller that happened to start it
+        Supplier<Flux<E>> shared = () -> Flux.usingWhen(Mono.fromSupplier(this::newSharedExecutor),
+            executor -> executor.<E>queryOrError(ms, parameter, rowBounds, boundSql),
+            executor -> executor.close(false));
+        Flux<E> coalesced = ((ReactiveConfiguration) configuration).getQueryCoalescer().coalesce(key, shared);
+        // shared outside of a transaction only, see ReactiveTransaction#isAutoCommit()
+        list = transaction.isAutoCommit().flatMapMany(autoCommit -> autoCommit ? coalesced
+            : queryOrError(ms, parameter, rowBounds, boundSql));
+      } else {
+        list = doQueryWithRetry(ms, parameter, rowBounds, resultHandler, boundSql);
+      }
     } finally {
       localCache.removeObject(key);
     }
@@ -266,6 +331,96 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
     return list;
   }
 
+  private <E> Flux<E> queryOrError(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+    try {
+      return doQueryWithRetry(ms, parameter, rowBounds, null, boundSql);
+    } catch (SQLException e) {
+      return Flux.error(new ReactiveMybatisException(e));
+    }
+  }
+
+  /**
+   * Returns an executor on a connection of its own for a query that several sessions share, see
+   * {@link com.waterdrop.mybatisreactive.annotations.Coalesce}.
+   */
+  protected BaseReactiveExecutor newSharedExecutor() {
+    ReactiveEnvironment environment = ((ReactiveConfiguration) configuration).getReactiveEnvironment();
+    return new SimpleReactiveExecutor(configuration, environment.newTransaction(null, true));
+  }
+
+  private <E> Flux<E> doQueryWithRetry(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
+      throws SQLException {
+    RetryPolicy retryPolicy = configuration instanceof ReactiveConfiguration && ms.getSqlCommandType() == SqlCommandType.SELECT
+        ? ((ReactiveConfiguration) configuration).getRetryPolicy(ms.getId()) : null;
+    if (retryPolicy == null || retryPolicy.getMaxAttempts() <= 1) {
+      return releaseAfterStatement(doQuery(ms, parameter, rowBounds, resultHandler, boundSql));
+    }
+    // each attempt prepares the statement again, on a new connection after a failure
+    Flux<E> attempt = Flux.defer(() -> {
+      try {
+        return doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+      } catch (SQLException e) {
+        return Flux.error(e);
+      }
+    });
+    return releaseAfterStatement(transaction.isAutoCommit()
+        .flatMapMany(autoCommit -> autoCommit ? retryPolicy.apply(attempt, this::releaseConnection) : attempt));
+  }
+
+  /**
+   * Whether autocommit statements give the connection back once none of them is running,
+   * see {@link ReactiveConfiguration#isReleaseAfterStatement()}.
+   */
+  protected boolean isReleaseAfterStatement() {
+    return configuration instanceof ReactiveConfiguration && ((ReactiveConfiguration) configuration).isReleaseAfterStatement();
+  }
+
+  private <E> Flux<E> releaseAfterStatement(Flux<E> statement) {
+    if (!isReleaseAfterStatement()) {
+      return statement;
+    }
+    return transaction.isAutoCommit().flatMapMany(autoCommit -> !autoCommit ? statement
+        : Flux.usingWhen(Mono.fromCallable(this::beginStatement), running -> statement,
+            running -> endStatement(), (running, e) -> endStatement(), running -> endStatement()));
+  }
+
+  private <T> Mono<T> releaseAfterStatement(Mono<T> statement) {
+    if (!isReleaseAfterStatement()) {
+      return statement;
+    }
+    return transaction.isAutoCommit().flatMap(autoCommit -> !autoCommit ? statement
+        : Mono.usingWhen(Mono.fromCallable(this::beginStatement), running -> statement,
+            running -> endStatement(), (running, e) -> endStatement(), running -> endStatement()));
+  }
+
+  private int beginStatement() {
+    synchronized (statementLock) {
+      return ++runningStatements;
+    }
+  }
+
+  private Mono<Void> endStatement() {
+    synchronized (statementLock) {
+      // the connection is detached while holding the lock, so a statement starting later acquires a new one
+      if (--runningStatements > 0 || transaction == null) {
+        return Mono.empty();
+      }
+      return releaseConnection();
+    }
+  }
+
+  /**
+   * Gives the connection of a failed statement back before it is attempted again, see {@link ReactiveTransaction#releaseConnection()}.
+   */
+  protected Mono<Void> releaseConnection() {
+    return transaction.releaseConnection();
+  }
+
+  private boolean isCoalesced(MappedStatement ms) {
+    return configuration instanceof ReactiveConfiguration
+        && ((ReactiveConfiguration) configuration).getStatementOptions(ms.getId()).isCoalesce();
+  }
+
   protected Mono<Connection> getConnection(Log statementLog) throws SQLException {
     Mono<Connection> connection = transaction.getConnection();
     if (statementLog.isDebugEnabled()) {
@@ -277,6 +432,10 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
     }
   }
 
+  protected Mono<Connection> getConnection(MappedStatement ms, Object parameter) {
+    return transaction.getConnection(ms, parameter);
+  }
+
   @Override
   public void setExecutorWrapper(ReactiveExecutor wrapper) {
     this.wrapper = wrapper;
@@ -288,7 +447,7 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
     private final String property;
     private final Class<?> targetType;
     private final CacheKey key;
-    private final PerpetualCache localCache;
+    private final Cache localCache;
     private final ObjectFactory objectFactory;
     private final ResultExtractor resultExtractor;
 
@@ -296,7 +455,7 @@ public abstract class BaseReactiveExecutor implements ReactiveExecutor {
     public DeferredLoad(MetaObject resultObject,
                         String property,
                         CacheKey key,
-                        PerpetualCache localCache,
+                        Cache localCache,
                         Configuration configuration,
                         Class<?> targetType) {
       this.resultObject = resultObject;
@@ -0,0 +1,63 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds hedged requests to a share of all requests of hedged statements. Each request earns {@code ratio} of a token,
+ * up to {@code burst} tokens, and each hedge spends one; when the database slows down as a whole the budget runs out
+ * instead of doubling its load.
+ */
+public class HedgeBudget {
+
+  private static final long UNIT = 1000;
+
+  private final long earnedPerRequest;
+  private final long maxTokens;
+  private final AtomicLong tokens;
+
+  /**
+   * @param ratio
+   *          share of requests that may be hedged, between 0 and 1
+   * @param burst
+   *          hedges that may be issued at once before the ratio applies
+   */
+  public HedgeBudget(double ratio, int burst) {
+    if (ratio < 0 || ratio > 1) {
+      throw new IllegalArgumentException("ratio must be between 0 and 1");
+    }
+    this.earnedPerRequest = Math.round(ratio * UNIT);
+    this.maxTokens = Math.max(1, burst) * UNIT;
+    this.tokens = new AtomicLong(maxTokens);
+  }
+
+  public void onRequest() {
+    tokens.accumulateAndGet(earnedPerRequest, (current, earned) -> Math.min(maxTokens, current + earned));
+  }
+
+  public boolean tryAcquire() {
+    long current;
+    do {
+      current = tokens.get();
+      if (current < UNIT) {
+        return false;
+      }
+    } while (!tokens.compareAndSet(current, current - UNIT));
+    return true;
+  }
+
+}
@@ -0,0 +1,234 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
+import com.waterdrop.mybatisreactive.executor.statement.ReactiveStatementHandler;
+import com.waterdrop.mybatisreactive.mapping.PartitionedScanPolicy;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Statement;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reads a select as concurrent range scans of a key on new connections, see {@link PartitionedScanPolicy}.
+ */
+class PartitionedRangeScan {
+
+  private static final String TABLE_ALIAS = "partitioned_scan";
+  private static final String LOWER_PARAMETER = "_partitionLower";
+  private static final String UPPER_PARAMETER = "_partitionUpper";
+
+  private final ReactiveExecutor executor;
+  private final ReactiveTransaction transaction;
+  private final ConnectionFactory connectionFactory;
+  private final PartitionedScanPolicy policy;
+
+  PartitionedRangeScan(ReactiveExecutor executor, ReactiveTransaction transaction, ConnectionFactory connectionFactory, PartitionedScanPolicy policy) {
+    this.executor = executor;
+    this.transaction = transaction;
+    this.connectionFactory = connectionFactory;
+    this.policy = policy;
+  }
+
+  <E> Flux<E> execute(MappedStatement ms, Object parameter, ResultHandler resultHandler, BoundSql boundSql) {
+    ReactiveConfiguration configuration = (ReactiveConfiguration) ms.getConfiguration();
+    // nothing is read nor assembled before subscription, a transaction may still choose the plain query
+    return Mono.defer(() -> splitPoints(ms, parameter, boundSql)).flatMapMany(points -> {
+      List<Flux<E>> ranges = new ArrayList<>();
+      for (int i = 0; i <= points.size(); i++) {
+        BoundSql rangeSql = rangeBoundSql(ms, boundSql, i == 0 ? null : points.get(i - 1), i == points.size() ? null : points.get(i));
+        ranges.add(SimpleReactiveExecutor.usingReadConnection(transaction, connectionFactory, ms, connection -> {
+          ReactiveStatementHandler handler = configuration.newReactiveStatementHandler(executor, ms, parameter, RowBounds.DEFAULT, resultHandler, rangeSql);
+          return handler.prepare(connection, 0).doOnNext(handler::parameterize).flatMapMany(it -> handler.<E>query(it, resultHandler));
+        }));
+      }
+      if (!policy.isOrdered()) {
+        return Flux.merge(ranges);
+      }
+      if (policy.isDescending()) {
+        Collections.reverse(ranges);
+      }
+      // ranges follow the key order, reading them all at once but emitting them in turn keeps that order
+      return Flux.mergeSequential(ranges);
+    });
+  }
+
+  private Mono<List<Object>> splitPoints(MappedStatement ms, Object parameter, BoundSql boundSql) {
+    if (policy.getPartitions() < 2) {
+      return Mono.just(Collections.emptyList());
+    }
+    if (policy.getSampleStatement() == null) {
+      return bounds(ms, boundSql).map(bounds -> evenSplit(bounds[0], bounds[1])).defaultIfEmpty(Collections.emptyList());
+    }
+    String sampleStatement = policy.getSampleStatement();
+    if (!ms.getConfiguration().hasStatement(sampleStatement)) {
+      sampleStatement = ms.getId().substring(0, ms.getId().lastIndexOf('.') + 1) + sampleStatement;
+    }
+    Flux<Object> samples;
+    try {
+      samples = executor.query(ms.getConfiguration().getMappedStatement(sampleStatement), parameter, RowBounds.DEFAULT, ReactiveExecutor.NO_RESULT_HANDLER);
+    } catch (SQLException e) {
+      return Mono.error(e);
+    }
+    return samples.filter(Objects::nonNull).collectList().map(this::quantiles);
+  }
+
+  private Mono<Object[]> bounds(MappedStatement ms, BoundSql boundSql) {
+    String column = TABLE_ALIAS + "." + policy.getColumn();
+    String sql = "SELECT MIN(" + column + "), MAX(" + column + ") FROM ( " + boundSql.getSql() + " ) " + TABLE_ALIAS;
+    BoundSql boundsSql = copyBoundSql(ms, boundSql, sql, boundSql.getParameterMappings());
+    return SimpleReactiveExecutor.usingReadConnection(transaction, connectionFactory, ms, connection -> {
+      Statement statement = connection.createStatement(sql);
+      ((ReactiveConfiguration) ms.getConfiguration()).newReactiveParameterHandler(ms, boundSql.getParameterObject(), boundsSql).setParameters(statement);
+      return Flux.from(statement.execute())
+          .concatMap(result -> result.map((row, metadata) -> new Object[] {row.get(0), row.get(1)}))
+          .take(1);
+    }).next();
+  }
+
+  List<Object> evenSplit(Object min, Object max) {
+    List<Object> points = new ArrayList<>();
+    if (min == null || max == null) {
+      return points;
+    }
+    long lower = toLong(min);
+    long upper = toLong(max);
+    long previous = lower;
+    for (int i = 1; i < policy.getPartitions(); i++) {
+      long point = lower + (long) ((double) (upper - lower) * i / policy.getPartitions());
+      if (point > previous) {
+        points.add(fromLong(point, min));
+        previous = point;
+      }
+    }
+    return points;
+  }
+
+  @SuppressWarnings("unchecked")
+  List<Object> quantiles(List<Object> samples) {
+    samples.sort((a, b) -> ((Comparable<Object>) a).compareTo(b));
+    List<Object> points = new ArrayList<>();
+    for (int i = 1; i < policy.getPartitions() && !samples.isEmpty(); i++) {
+      Object point = samples.get(samples.size() * i / policy.getPartitions());
+      if (points.isEmpty() || ((Comparable<Object>) point).compareTo(points.get(points.size() - 1)) > 0) {
+        points.add(point);
+      }
+    }
+    return points;
+  }
+
+  BoundSql rangeBoundSql(MappedStatement ms, BoundSql boundSql, Object lower, Object upper) {
+    if (lower == null && upper == null) {
+      return boundSql;
+    }
+    String column = TABLE_ALIAS + "." + policy.getColumn();
+    List<ParameterMapping> parameterMappings = new ArrayList<>(boundSql.getParameterMappings());
+    StringBuilder sql = new StringBuilder("SELECT * FROM ( ").append(boundSql.getSql()).append(" ) ").append(TABLE_ALIAS).append(" WHERE ");
+    if (lower == null) {
+      // keys that are null fall in no range, they are read with the first one
+      sql.append(column).append(" < ? OR ").append(column).append(" IS NULL");
+      parameterMappings.add(new ParameterMapping.Builder(ms.getConfiguration(), UPPER_PARAMETER, upper.getClass()).build());
+    } else if (upper == null) {
+      sql.append(column).append(" >= ?");
+      parameterMappings.add(new ParameterMapping.Builder(ms.getConfiguration(), LOWER_PARAMETER, lower.getClass()).build());
+    } else {
+      sql.append(column).append(" >= ? AND ").append(column).append(" < ?");
+      parameterMappings.add(new ParameterMapping.Builder(ms.getConfiguration(), LOWER_PARAMETER, lower.getClass()).build());
+      parameterMappings.add(new ParameterMapping.Builder(ms.getConfiguration(), UPPER_PARAMETER, upper.getClass()).build());
+    }
+    if (policy.isOrdered() && policy.isDescending()) {
+      sql.append(" ORDER BY CASE WHEN ").append(column).append(" IS NULL THEN 1 ELSE 0 END, ").append(column).append(" DESC");
+    } else if (policy.isOrdered()) {
+      // the derived table loses the order of the select; null keys come first, as their range does
+      sql.append(" ORDER BY CASE WHEN ").append(column).append(" IS NULL THEN 0 ELSE 1 END, ").append(column);
+    }
+    BoundSql rangeSql = copyBoundSql(ms, boundSql, sql.toString(), parameterMappings);
+    rangeSql.setAdditionalParameter(LOWER_PARAMETER, lower);
+    rangeSql.setAdditionalParameter(UPPER_PARAMETER, upper);
+    return rangeSql;
+  }
+
+  @SuppressWarnings("unchecked")
+  private BoundSql copyBoundSql(MappedStatement ms, BoundSql boundSql, String sql, List<ParameterMapping> parameterMappings) {
+    BoundSql copy = new BoundSql(ms.getConfiguration(), sql, parameterMappings, boundSql.getParameterObject());
+    // e.g. the items of a foreach
+    Map<String, Object> additionalParameters = (Map<String, Object>) SystemMetaObject.forObject(boundSql).getValue("additionalParameters");
+    additionalParameters.forEach(copy::setAdditionalParameter);
+    return copy;
+  }
+
+  private long toLong(Object key) {
+    if (key instanceof Number) {
+      return ((Number) key).longValue();
+    } else if (key instanceof LocalDate) {
+      return ((LocalDate) key).toEpochDay();
+    } else if (key instanceof LocalDateTime) {
+      return ((LocalDateTime) key).toEpochSecond(ZoneOffset.UTC);
+    } else if (key instanceof OffsetDateTime) {
+      return ((OffsetDateTime) key).toEpochSecond();
+    } else if (key instanceof Instant) {
+      return ((Instant) key).getEpochSecond();
+    }
+    throw new ReactiveMybatisException("Cannot split keys of type " + key.getClass().getName() + " evenly, declare a sample statement");
+  }
+
+  private Object fromLong(long point, Object sample) {
+    if (sample instanceof Integer) {
+      return (int) point;
+    } else if (sample instanceof Short) {
+      return (short) point;
+    } else if (sample instanceof BigDecimal) {
+      return BigDecimal.valueOf(point);
+    } else if (sample instanceof BigInteger) {
+      return BigInteger.valueOf(point);
+    } else if (sample instanceof Double || sample instanceof Float) {
+      return (double) point;
+    } else if (sample instanceof LocalDate) {
+      return LocalDate.ofEpochDay(point);
+    } else if (sample instanceof LocalDateTime) {
+      return LocalDateTime.ofEpochSecond(point, 0, ZoneOffset.UTC);
+    } else if (sample instanceof OffsetDateTime) {
+      return Instant.ofEpochSecond(point).atOffset(((OffsetDateTime) sample).getOffset());
+    } else if (sample instanceof Instant) {
+      return Instant.ofEpochSecond(point);
+    }
+    return point;
+  }
+
+}
@@ -0,0 +1,110 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executor for drivers that accept several statements in flight on one connection (e.g. the Postgres extended query
+ * protocol). Subscribing to the result of an update also sends the updates issued before it that have not been sent
+ * yet, without waiting for their results, so a session issuing N statements waits roughly one round trip instead of N.
+ * Results are still delivered in issue order, and commit sends and waits for every statement issued before it.
+ * Statements run within the subscription of their caller, or of the commit when nobody subscribed to their result.
+ * <p>
+ * All statements of the session share the connection the transaction acquires once, see
+ * {@link ReactiveTransaction#getConnection()}. A statement that fails while nobody is subscribed to its
+ * result makes the following commit fail.
+ *
+ * @see com.waterdrop.mybatisreactive.session.ReactiveConfiguration#setPipeliningEnabled(boolean)
+ */
+public class PipeliningReactiveExecutor extends SimpleReactiveExecutor {
+
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private Mono<Void> pending = Mono.empty();
+
+  public PipeliningReactiveExecutor(Configuration configuration, ReactiveTransaction transaction) {
+    super(configuration, transaction);
+  }
+
+  @Override
+  public Mono<Integer> doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+    Mono<Void> previous = pending;
+    AtomicBoolean observed = new AtomicBoolean();
+    Mono<Integer> statement = Mono.defer(() -> {
+      try {
+        return super.doUpdate(ms, parameter);
+      } catch (SQLException e) {
+        return Mono.error(e);
+      }
+    });
+    // sent along with the earlier statements, its result waits for theirs; it runs once whoever subscribes first
+    Mono<Integer> result = Mono.zipDelayError(previous.thenReturn(Boolean.TRUE), statement)
+        .map(Tuple2::getT2)
+        .cache();
+    pending = result.then().onErrorResume(e -> {
+      if (!observed.get()) {
+        failure.compareAndSet(null, e);
+      }
+      return Mono.empty();
+    });
+    return result.doOnSubscribe(s -> observed.set(true));
+  }
+
+  @Override
+  protected boolean isReleaseAfterStatement() {
+    // pipelined statements share the connection beyond their own results
+    return false;
+  }
+
+  @Override
+  public Mono<Void> commit(boolean required) throws SQLException {
+    Mono<Void> previous = pending;
+    return previous.then(Mono.defer(() -> {
+      Throwable cause = failure.get();
+      if (cause != null) {
+        return Mono.error(new ExecutorException("Cannot commit, a pipelined statement failed.  Cause: " + cause, cause));
+      }
+      try {
+        return super.commit(required);
+      } catch (SQLException e) {
+        return Mono.error(e);
+      }
+    }));
+  }
+
+  @Override
+  public Mono<Void> rollback(boolean required) throws SQLException {
+    Mono<Void> previous = pending;
+    return previous.then(Mono.defer(() -> {
+      failure.set(null);
+      try {
+        return super.rollback(required);
+      } catch (SQLException e) {
+        return Mono.error(e);
+      }
+    }));
+  }
+
+}
@@ -0,0 +1,65 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import org.apache.ibatis.cache.CacheKey;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of identical queries: concurrent subscribers with an equal {@link CacheKey} share one
+ * in-flight execution and its materialized result, which is replayed to a subscriber joining just as it completes.
+ * The entry is dropped as soon as the execution terminates, and the execution is cancelled once every subscriber has
+ * cancelled. The query runs on a connection of its own, so a subscriber that cancels or closes its session does not
+ * fail the others.
+ *
+ * @see com.waterdrop.mybatisreactive.annotations.Coalesce
+ */
+public class QueryCoalescer {
+
+  private final ConcurrentMap<CacheKey, Flux<List<Object>>> inFlight = new ConcurrentHashMap<>();
+
+  @SuppressWarnings("unchecked")
+  public <E> Flux<E> coalesce(CacheKey key, Supplier<Flux<E>> query) {
+    return Flux.defer(() -> inFlight.computeIfAbsent(key, k -> execute(k, query)))
+        .singleOrEmpty()
+        .flatMapIterable(list -> (List<E>) list);
+  }
+
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <E> Flux<List<Object>> execute(CacheKey key, Supplier<Flux<E>> query) {
+    AtomicReference<Flux<List<Object>>> self = new AtomicReference<>();
+    Flux<List<Object>> shared = Flux.defer(query)
+        .collectList()
+        .map(list -> (List<Object>) list)
+        .doFinally(signal -> inFlight.remove(key, self.get()))
+        .flux()
+        .replay(1)
+        .refCount();
+    self.set(shared);
+    return shared;
+  }
+
+}
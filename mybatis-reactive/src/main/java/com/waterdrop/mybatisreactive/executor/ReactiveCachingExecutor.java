@@ -0,0 +1,183 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import com.waterdrop.mybatisreactive.cache.ReactiveCache;
+import com.waterdrop.mybatisreactive.cache.ReactiveTransactionalCacheManager;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Second level cache support for any {@link ReactiveExecutor}.
+ * Results are materialized into a list before they are staged in the cache, and staged entries become
+ * visible to other sessions only after commit.
+ *
+ * @author Clinton Begin
+ * @author Eduardo Macarron
+ */
+public class ReactiveCachingExecutor implements ReactiveExecutor {
+
+  private final ReactiveExecutor delegate;
+  private final ReactiveTransactionalCacheManager tcm = new ReactiveTransactionalCacheManager();
+
+  public ReactiveCachingExecutor(ReactiveExecutor delegate) {
+    this.delegate = delegate;
+    delegate.setExecutorWrapper(this);
+  }
+
+  @Override
+  public ReactiveTransaction getTransaction() {
+    return delegate.getTransaction();
+  }
+
+  @Override
+  public Mono<Void> close(boolean forceRollback) {
+    // issue #499, #524 and #573
+    Mono<Void> flush = forceRollback ? tcm.rollback() : tcm.commit();
+    return flush.then(Mono.defer(() -> delegate.close(forceRollback)));
+  }
+
+  @Override
+  public boolean isClosed() {
+    return delegate.isClosed();
+  }
+
+  @Override
+  public Mono<Integer> update(MappedStatement ms, Object parameterObject) throws SQLException {
+    return flushCacheIfRequired(ms).then(delegate.update(ms, parameterObject));
+  }
+
+  @Override
+  public <E> Flux<E> query(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
+    BoundSql boundSql = ms.getBoundSql(parameterObject);
+    CacheKey key = createCacheKey(ms, parameterObject, rowBounds, boundSql);
+    return query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+  }
+
+  @Override
+  public <E> Flux<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+    return flushCacheIfRequired(ms).thenMany(delegate.queryCursor(ms, parameter, rowBounds));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <E> Flux<E> query(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql)
+      throws SQLException {
+    ReactiveCache cache = getCache(ms);
+    if (cache != null) {
+      if (ms.isUseCache() && resultHandler == null) {
+        ensureNoOutParams(ms, boundSql);
+        return flushCacheIfRequired(ms)
+            .then(tcm.getObject(cache, key))
+            .map(list -> Flux.fromIterable((List<E>) list))
+            .switchIfEmpty(Mono.fromSupplier(() -> queryAndStage(cache, ms, parameterObject, rowBounds, key, boundSql)))
+            .flatMapMany(Function.identity());
+      }
+      return flushCacheIfRequired(ms).thenMany(delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql));
+    }
+    return delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+  }
+
+  private <E> Flux<E> queryAndStage(ReactiveCache cache, MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key, BoundSql boundSql) {
+    Flux<E> list;
+    try {
+      list = delegate.query(ms, parameterObject, rowBounds, NO_RESULT_HANDLER, key, boundSql);
+    } catch (SQLException e) {
+      throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+    }
+    return list.collectList()
+        .doOnNext(result -> tcm.putObject(cache, key, result)) // issue #578 and #116
+        .flatMapMany(Flux::fromIterable);
+  }
+
+  @Override
+  public Mono<Void> commit(boolean required) throws SQLException {
+    return delegate.commit(required).then(tcm.commit());
+  }
+
+  @Override
+  public Mono<Void> rollback(boolean required) throws SQLException {
+    return delegate.rollback(required).then(tcm.rollback());
+  }
+
+  private void ensureNoOutParams(MappedStatement ms, BoundSql boundSql) {
+    if (ms.getStatementType() == StatementType.CALLABLE) {
+      for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+        if (parameterMapping.getMode() != ParameterMode.IN) {
+          throw new ExecutorException("Caching stored procedures with OUT params is not supported.  Please configure useCache=false in " + ms.getId() + " statement.");
+        }
+      }
+    }
+  }
+
+  @Override
+  public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+    return delegate.createCacheKey(ms, parameterObject, rowBounds, boundSql);
+  }
+
+  @Override
+  public void clearLocalCache() {
+    delegate.clearLocalCache();
+  }
+
+  @Override
+  public void clearCacheAfterSavepointRollback() {
+    delegate.clearCacheAfterSavepointRollback();
+    // staged entries are not tracked per savepoint, so all of them go; pending clears stay, they may come
+    // from updates made before the savepoint
+    tcm.discardPendingEntries();
+  }
+
+  /**
+   * Stages the clear of the cache of {@code ms} once subscribed, a statement that is never run leaves it alone.
+   */
+  private Mono<Void> flushCacheIfRequired(MappedStatement ms) {
+    return Mono.fromRunnable(() -> {
+      ReactiveCache cache = getCache(ms);
+      if (cache != null && ms.isFlushCacheRequired()) {
+        tcm.clear(cache);
+      }
+    });
+  }
+
+  private ReactiveCache getCache(MappedStatement ms) {
+    Cache cache = ms.getCache();
+    return cache == null ? null : ((ReactiveConfiguration) ms.getConfiguration()).getReactiveCache(cache);
+  }
+
+  @Override
+  public void setExecutorWrapper(ReactiveExecutor executor) {
+    // the delegate already reports to this executor, which keeps no wrapper of its own
+  }
+
+}
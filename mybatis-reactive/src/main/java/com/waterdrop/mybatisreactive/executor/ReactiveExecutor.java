@@ -39,8 +39,23 @@ public interface ReactiveExecutor {
 
   <E> Flux<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException;
 
+  <E> Flux<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException;
+
+  Mono<Void> commit(boolean required) throws SQLException;
+
+  Mono<Void> rollback(boolean required) throws SQLException;
+
+  CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql);
+
   void clearLocalCache();
 
+  /**
+   * Drops whatever was cached since the savepoint the transaction just rolled back to.
+   */
+  default void clearCacheAfterSavepointRollback() {
+    clearLocalCache();
+  }
+
   ReactiveTransaction getTransaction();
 
   Mono<Void> close(boolean forceRollback);
@@ -16,30 +16,42 @@
 package com.waterdrop.mybatisreactive.executor;
 
 import com.waterdrop.mybatisreactive.executor.statement.ReactiveStatementHandler;
+import com.waterdrop.mybatisreactive.mapping.ScatterGatherPolicy;
+import com.waterdrop.mybatisreactive.mapping.StatementOptions;
+import com.waterdrop.mybatisreactive.metrics.CancellationScope;
+import com.waterdrop.mybatisreactive.metrics.LatencyHistogram;
 import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
 import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
+import com.waterdrop.mybatisreactive.transaction.ReadWriteSplittingTransaction;
+import com.waterdrop.mybatisreactive.transaction.ShardingTransaction;
 import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
 import io.r2dbc.spi.Statement;
-import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BatchResult;
-import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  *
  */
 public class SimpleReactiveExecutor extends BaseReactiveExecutor {
 
+    private static final int MIN_HEDGE_SAMPLES = 20;
+    private static final int DEFAULT_CURSOR_FETCH_SIZE = 256;
+
     public SimpleReactiveExecutor(Configuration configuration, ReactiveTransaction transaction) {
         super(configuration, transaction);
     }
@@ -49,7 +61,7 @@ public class SimpleReactiveExecutor extends BaseReactiveExecutor {
         Mono<Statement> stmt;
         ReactiveConfiguration configuration = (ReactiveConfiguration) ms.getConfiguration();
         ReactiveStatementHandler handler = configuration.newReactiveStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
-        stmt = prepareStatement(handler, ms.getStatementLog());
+        stmt = prepareStatement(handler, ms, parameter);
         return stmt.flatMap(handler::update);
     }
 
@@ -57,21 +69,125 @@ public class SimpleReactiveExecutor extends BaseReactiveExecutor {
     public <E> Flux<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
         Mono<Statement> stmt;
         ReactiveConfiguration configuration = (ReactiveConfiguration) ms.getConfiguration();
+        StatementOptions options = configuration.getStatementOptions(ms.getId());
+        if (options.getScatterGather() != null && transaction instanceof ShardingTransaction) {
+            return scatter((ShardingTransaction) transaction, options.getScatterGather(), ms, parameter, rowBounds, resultHandler);
+        }
         ReactiveStatementHandler handler = configuration.newReactiveStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
-        stmt = prepareStatement(handler, ms.getStatementLog());
-        return stmt.flatMapMany(it->handler.query(it, resultHandler));
+        stmt = prepareStatement(handler, ms, parameter);
+        Flux<E> query = stmt.flatMapMany(it->handler.query(it, resultHandler));
+        if (isPartitionedScan(configuration, ms, options, rowBounds)) {
+            Flux<E> scan = new PartitionedRangeScan(wrapper, transaction, configuration.getReactiveEnvironment().getConnectionFactory(), options.getPartitionedScan())
+                    .execute(ms, parameter, resultHandler, boundSql != null ? boundSql : ms.getBoundSql(parameter));
+            // outside of a transaction only, see ReactiveTransaction#isAutoCommit()
+            return transaction.isAutoCommit().flatMapMany(autoCommit -> autoCommit ? scan : query);
+        }
+        if (!options.isHedged() || configuration.getReactiveEnvironment() == null
+                || configuration.getShardingStrategy(ms.getId()) != null) {
+            // a hedge runs on the primary connection factory, not on the shard of the statement
+            return query;
+        }
+        // outside of a transaction only, see ReactiveTransaction#isAutoCommit()
+        return transaction.isAutoCommit().flatMapMany(autoCommit -> autoCommit
+                ? hedge(query, ms, parameter, rowBounds, resultHandler, boundSql, options)
+                : query);
+    }
+
+    private boolean isPartitionedScan(ReactiveConfiguration configuration, MappedStatement ms, StatementOptions options, RowBounds rowBounds) {
+        return options.getPartitionedScan() != null
+                && configuration.getReactiveEnvironment() != null
+                && configuration.getShardingStrategy(ms.getId()) == null
+                && (rowBounds == null || (rowBounds.getOffset() == RowBounds.NO_ROW_OFFSET && rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT));
+    }
+
+    /**
+     * Runs the select concurrently on every shard, each on its connection, and combines the results.
+     */
+    private <E> Flux<E> scatter(ShardingTransaction sharding, ScatterGatherPolicy policy, MappedStatement ms, Object parameter,
+                                RowBounds rowBounds, ResultHandler resultHandler) {
+        ReactiveConfiguration configuration = (ReactiveConfiguration) ms.getConfiguration();
+        List<RowBounds> shardRowBounds = new ArrayList<>();
+        List<Flux<E>> shards = new ArrayList<>();
+        for (int shard = 0; shard < sharding.getShardCount(); shard++) {
+            RowBounds bounds = policy.getShardRowBounds(rowBounds);
+            // plugins may rewrite the sql of a shard, each one gets its own bound sql
+            ReactiveStatementHandler handler = configuration.newReactiveStatementHandler(wrapper, ms, parameter, bounds, resultHandler, ms.getBoundSql(parameter));
+            Mono<Connection> connection = sharding.getShardConnection(ms, shard);
+            shardRowBounds.add(bounds);
+            shards.add(transaction.getTimeout().defaultIfEmpty(0)
+                    .flatMap(timeout -> connection.flatMap(c -> handler.prepare(c, timeout)))
+                    .doOnNext(handler::parameterize)
+                    .flatMapMany(it -> handler.<E>query(it, resultHandler)));
+        }
+        return CancellationScope.of(policy.gather(ms, shards, rowBounds, shardRowBounds));
+    }
+
+    /**
+     * Races {@code query} against the same select started on a new connection once the hedge delay has passed
+     * without a row. The first one to signal wins and the other is cancelled, which closes the hedge connection.
+     */
+    private <E> Flux<E> hedge(Flux<E> query, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                              ResultHandler resultHandler, BoundSql boundSql, StatementOptions options) {
+        ReactiveConfiguration configuration = (ReactiveConfiguration) ms.getConfiguration();
+        Duration delay = hedgeDelay(configuration, ms, options);
+        if (delay == null) {
+            return query;
+        }
+        HedgeBudget budget = configuration.getHedgeBudget();
+        Function<Connection, Flux<E>> work = connection -> {
+            ReactiveStatementHandler handler = configuration.newReactiveStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
+            return handler.prepare(connection, 0).doOnNext(handler::parameterize).flatMapMany(it -> handler.<E>query(it, resultHandler));
+        };
+        Flux<E> hedged = Mono.delay(delay).flatMapMany(tick -> {
+            if (!budget.tryAcquire()) {
+                return Flux.never();
+            }
+            return usingReadConnection(transaction, configuration.getReactiveEnvironment().getConnectionFactory(), ms, work);
+        });
+        // a request earns its share of the budget when it runs, not when it is assembled
+        return CancellationScope.of(Flux.firstWithSignal(query, hedged).doOnSubscribe(subscription -> budget.onRequest()));
+    }
+
+    /**
+     * Runs {@code work} on a connection of its own, closed once it terminates. The connection is taken where the session
+     * reads, from a replica of the selector unless the session wrote, and from {@code connectionFactory} without replicas.
+     */
+    static <T> Flux<T> usingReadConnection(ReactiveTransaction transaction, ConnectionFactory connectionFactory, MappedStatement ms,
+                                          Function<Connection, ? extends Publisher<T>> work) {
+        if (transaction instanceof ReadWriteSplittingTransaction) {
+            return ((ReadWriteSplittingTransaction) transaction).usingReadConnection(ms, work);
+        }
+        return Flux.usingWhen(connectionFactory.create(), work, Connection::close);
+    }
+
+    private Duration hedgeDelay(ReactiveConfiguration configuration, MappedStatement ms, StatementOptions options) {
+        if (options.getHedgeDelay() > 0) {
+            return Duration.ofMillis(options.getHedgeDelay());
+        }
+        LatencyHistogram latency = configuration.getStatementMetrics().getStats(ms.getId()).getLatency();
+        // too few samples for a meaningful percentile
+        if (latency.getCount() < MIN_HEDGE_SAMPLES) {
+            return null;
+        }
+        return latency.getPercentile(options.getHedgePercentile());
     }
 
     @Override
-    protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
-    /*Configuration configuration = ms.getConfiguration();
-    StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
-    Statement stmt = prepareStatement(handler, ms.getStatementLog());
-    Cursor<E> cursor = handler.queryCursor(stmt);
-    stmt.closeOnCompletion();
-    return cursor;*/
-        //todo
-        return null;
+    protected <E> Flux<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        ReactiveConfiguration configuration = (ReactiveConfiguration) ms.getConfiguration();
+        ReactiveStatementHandler handler = configuration.newReactiveStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
+        int fetchSize = cursorFetchSize(ms);
+        Mono<Statement> stmt = prepareStatement(handler, ms, parameter).map(it -> it.fetchSize(fetchSize));
+        // demand is handed upstream in batches of the fetch size, so at most that many rows are read ahead
+        return stmt.flatMapMany(it -> handler.<E>query(it, null)).limitRate(fetchSize);
+    }
+
+    private int cursorFetchSize(MappedStatement ms) {
+        if (ms.getFetchSize() != null && ms.getFetchSize() > 0) {
+            return ms.getFetchSize();
+        }
+        Integer defaultFetchSize = ms.getConfiguration().getDefaultFetchSize();
+        return defaultFetchSize != null && defaultFetchSize > 0 ? defaultFetchSize : DEFAULT_CURSOR_FETCH_SIZE;
     }
 
     @Override
@@ -79,8 +195,8 @@ public class SimpleReactiveExecutor extends BaseReactiveExecutor {
         return Collections.emptyList();
     }
 
-    private Mono<Statement> prepareStatement(ReactiveStatementHandler handler, Log statementLog) throws SQLException {
-        Mono<Connection> connection = getConnection(statementLog);
+    private Mono<Statement> prepareStatement(ReactiveStatementHandler handler, MappedStatement ms, Object parameter) {
+        Mono<Connection> connection = getConnection(ms, parameter);
         return transaction.getTimeout().defaultIfEmpty(0).flatMap(timeout->
                 connection.flatMap(c -> handler.prepare(c, timeout)).doOnNext(handler::parameterize)
         );
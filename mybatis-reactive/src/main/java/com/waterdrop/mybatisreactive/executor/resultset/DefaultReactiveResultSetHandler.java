@@ -24,6 +24,7 @@ import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 
 import java.lang.reflect.Constructor;
@@ -104,22 +105,7 @@ public class DefaultReactiveResultSetHandler implements ReactiveResultSetHandler
 
         int resultSetNum = Math.min(resultMapCount, results.size());
         return Flux.range(0, resultSetNum).flatMap(index -> {
-            ResultMap resultMap = resultMaps.get(index);
-            Result result = resultList.get(index);
-            ResultSetProxyHandler resultSetProxyHandler = new ResultSetProxyHandler();
-            ResultSet proxyResultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
-                    new Class[]{ResultSet.class}, resultSetProxyHandler);
-            Flux<Object> r = Flux.from(result.map((row, rowMetadata) -> {
-                resultSetProxyHandler.initRowInfo(row, rowMetadata);
-                ResultSetWrapper rsw;
-                try {
-                    rsw = new ResultSetWrapper(proxyResultSet, this.configuration);
-                    Object rowValue = getRowValue(rsw, resultMap, null);
-                    return rowValue;
-                } catch (SQLException exception) {
-                    throw new ReactiveMybatisException(exception);
-                }
-            }));
+            Flux<Object> r = mapRows(resultList.get(index), resultMaps.get(index));
             //collapseSingleResultList
             if(resultSetNum==1){
                 return r;
@@ -129,6 +115,41 @@ public class DefaultReactiveResultSetHandler implements ReactiveResultSetHandler
         });
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public <E> Flux<E> handleResultSets(Publisher<? extends Result> results) {
+        List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+        if (resultMaps.size() > 1) {
+            // every result set becomes one list, so all of them are needed up front
+            return (Flux<E>) Flux.from(results).collectList().flatMapMany(this::handleResultSets);
+        }
+        // rows are mapped as they arrive, a cancel from downstream reaches the driver
+        return (Flux<E>) Flux.from(results).index().concatMap(indexed -> {
+            if (indexed.getT1() > 0) {
+                return Flux.from(indexed.getT2().getRowsUpdated()).thenMany(Flux.empty());
+            }
+            validateResultMapsCount(false, resultMaps.size());
+            return mapRows(indexed.getT2(), resultMaps.get(0));
+        });
+    }
+
+    private Flux<Object> mapRows(Result result, ResultMap resultMap) {
+        ResultSetProxyHandler resultSetProxyHandler = new ResultSetProxyHandler();
+        ResultSet proxyResultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class[]{ResultSet.class}, resultSetProxyHandler);
+        return Flux.from(result.map((row, rowMetadata) -> {
+            resultSetProxyHandler.initRowInfo(row, rowMetadata);
+            ResultSetWrapper rsw;
+            try {
+                rsw = new ResultSetWrapper(proxyResultSet, this.configuration);
+                Object rowValue = getRowValue(rsw, resultMap, null);
+                return rowValue;
+            } catch (SQLException exception) {
+                throw new ReactiveMybatisException(exception);
+            }
+        }));
+    }
+
     private void validateResultMapsCount(boolean isEmpty, int resultMapCount) {
         if (!isEmpty && resultMapCount < 1) {
             throw new ExecutorException("A query was run and no Result Maps were found for the Mapped Statement '" + mappedStatement.getId()
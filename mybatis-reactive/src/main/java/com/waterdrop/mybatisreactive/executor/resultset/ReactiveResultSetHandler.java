@@ -17,6 +17,7 @@ package com.waterdrop.mybatisreactive.executor.resultset;
 
 import io.r2dbc.spi.Result;
 import org.apache.ibatis.cursor.Cursor;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 
 import java.sql.CallableStatement;
@@ -32,4 +33,9 @@ public interface ReactiveResultSetHandler {
 
   <E> Flux<E> handleResultSets(List<Result> results);
 
+  /**
+   * Maps rows while the results are still being read, so that cancelling the returned flux cancels the query.
+   */
+  <E> Flux<E> handleResultSets(Publisher<? extends Result> results);
+
 }
@@ -20,6 +20,9 @@ import com.waterdrop.mybatisreactive.executor.ReactiveExecutor;
 import com.waterdrop.mybatisreactive.executor.keygen.ReactiveKeyGenerator;
 import com.waterdrop.mybatisreactive.executor.parameter.ReactiveParameterHandler;
 import com.waterdrop.mybatisreactive.executor.resultset.ReactiveResultSetHandler;
+import com.waterdrop.mybatisreactive.metrics.CancellationScope;
+import com.waterdrop.mybatisreactive.metrics.FailedStatement;
+import com.waterdrop.mybatisreactive.metrics.StatementStats;
 import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
 import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.Statement;
@@ -33,9 +36,12 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.type.TypeHandlerRegistry;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Clinton Begin
@@ -53,6 +59,7 @@ public abstract class BaseReactiveStatementHandler implements ReactiveStatementH
   protected final RowBounds rowBounds;
 
   protected BoundSql boundSql;
+  protected Integer queryTimeout;
 
   protected BaseReactiveStatementHandler(ReactiveExecutor executor, MappedStatement mappedStatement, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
     this.configuration = mappedStatement.getConfiguration();
@@ -105,17 +112,74 @@ public abstract class BaseReactiveStatementHandler implements ReactiveStatementH
 
   protected abstract Statement instantiateStatement(Connection connection) throws SQLException;
 
+  /**
+   * R2DBC statements carry no timeout, the resolved value is enforced on the execution by {@link #withTimeout(Flux)}.
+   */
   protected void setStatementTimeout(Statement stmt, Integer transactionTimeout) throws SQLException {
-    /*Integer queryTimeout = null;
+    Integer queryTimeout = null;
     if (mappedStatement.getTimeout() != null) {
       queryTimeout = mappedStatement.getTimeout();
     } else if (configuration.getDefaultStatementTimeout() != null) {
       queryTimeout = configuration.getDefaultStatementTimeout();
     }
-    if (queryTimeout != null) {
-      stmt.setQueryTimeout(queryTimeout);
+    this.queryTimeout = StatementUtil.applyTransactionTimeout(queryTimeout, transactionTimeout);
+  }
+
+  protected <T> Flux<T> withTimeout(Flux<T> execution) {
+    return StatementUtil.applyTimeout(execution, queryTimeout, boundSql.getSql());
+  }
+
+  protected <T> Mono<T> withTimeout(Mono<T> execution) {
+    return StatementUtil.applyTimeout(execution, queryTimeout, boundSql.getSql());
+  }
+
+  protected <T> Flux<T> recordMetrics(Flux<T> execution) {
+    StatementStats stats = ((ReactiveConfiguration) configuration).getStatementMetrics().getStats(mappedStatement.getId());
+    return Flux.deferContextual(context -> {
+      long start = System.nanoTime();
+      AtomicBoolean pending = new AtomicBoolean(true);
+      Runnable firstResult = () -> {
+        if (pending.get() && pending.compareAndSet(true, false)) {
+          stats.recordLatency(System.nanoTime() - start);
+        }
+      };
+      stats.recordExecution();
+      return execution.doOnNext(row -> firstResult.run())
+          .doOnComplete(firstResult)
+          .doOnEach(signal -> {
+            if (signal.isOnError()) {
+              recordError(stats, signal.getThrowable(), signal.getContextView());
+            }
+          })
+          .doOnCancel(() -> recordCancellation(stats, context));
+    });
+  }
+
+  protected <T> Mono<T> recordMetrics(Mono<T> execution) {
+    StatementStats stats = ((ReactiveConfiguration) configuration).getStatementMetrics().getStats(mappedStatement.getId());
+    return Mono.deferContextual(context -> {
+      long start = System.nanoTime();
+      stats.recordExecution();
+      return execution.doOnSuccess(result -> stats.recordLatency(System.nanoTime() - start))
+          .doOnEach(signal -> {
+            if (signal.isOnError()) {
+              recordError(stats, signal.getThrowable(), signal.getContextView());
+            }
+          })
+          .doOnCancel(() -> recordCancellation(stats, context));
+    });
+  }
+
+  private void recordCancellation(StatementStats stats, ContextView context) {
+    // e.g. selectOne stopping at a second row is no cancellation of the statement
+    if (CancellationScope.isRequestedBySubscriber(context)) {
+      stats.recordCancellation();
     }
-    StatementUtil.applyTransactionTimeout(stmt, queryTimeout, transactionTimeout);*/
+  }
+
+  private void recordError(StatementStats stats, Throwable error, ContextView context) {
+    stats.recordError(error);
+    FailedStatement.mark(context, mappedStatement.getId());
   }
 
   protected void setFetchSize(Statement stmt) throws SQLException {
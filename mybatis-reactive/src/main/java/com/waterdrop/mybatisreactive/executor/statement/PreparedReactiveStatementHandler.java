@@ -19,7 +19,6 @@ import com.waterdrop.mybatisreactive.executor.ReactiveExecutor;
 import com.waterdrop.mybatisreactive.executor.keygen.ReactiveKeyGenerator;
 import com.waterdrop.mybatisreactive.executor.resultset.RowWrap;
 import io.r2dbc.spi.Connection;
-import io.r2dbc.spi.Result;
 import io.r2dbc.spi.Statement;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
@@ -47,16 +46,17 @@ public class PreparedReactiveStatementHandler extends BaseReactiveStatementHandl
   public Mono<Integer> update(Statement statement) {
     ReactiveKeyGenerator keyGenerator = ReactiveKeyGenerator.convertFromKeyGenerator(mappedStatement.getKeyGenerator());
     Object parameterObject = boundSql.getParameterObject();
-    return Mono.from(statement.execute()).flatMap(result->{
+    return recordMetrics(withTimeout(Mono.from(statement.execute()).flatMap(result->{
       return keyGenerator.processAfter(executor, mappedStatement, result, parameterObject)
               .then(Mono.from(result.getRowsUpdated()));
-    });
+    })));
   }
 
 
   @Override
   public <E> Flux<E> query(Statement statement, ResultHandler resultHandler) {
-    return Flux.from(statement.execute()).map(it -> (Result) it).collectList().flatMapMany(results -> resultSetHandler.handleResultSets(results));
+    // a driver signals the result as soon as the response starts, the rows may still be far away
+    return recordMetrics(withTimeout(resultSetHandler.handleResultSets(Flux.from(statement.execute()))));
   }
 
 
@@ -15,8 +15,12 @@
  */
 package com.waterdrop.mybatisreactive.executor.statement;
 
-import java.sql.SQLException;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 import java.sql.Statement;
+import java.time.Duration;
 
 /**
  * Utility for {@link Statement}.
@@ -33,20 +37,52 @@ public class StatementUtil {
   /**
    * Apply a transaction timeout.
    * <p>
-   * Update a query timeout to apply a transaction timeout.
+   * Returns the smaller of the query timeout and the transaction timeout. Zero or {@code null} means no limit.
    * </p>
-   * @param statement a target statement
-   * @param queryTimeout a query timeout
-   * @param transactionTimeout a transaction timeout
-   * @throws SQLException if a database access error occurs, this method is called on a closed <code>Statement</code>
+   * @param queryTimeout a query timeout in seconds
+   * @param transactionTimeout a transaction timeout in seconds
+   * @return the timeout to apply to the statement
    */
-  public static void applyTransactionTimeout(Statement statement, Integer queryTimeout, Integer transactionTimeout) throws SQLException {
-    if (transactionTimeout == null) {
-      return;
+  public static Integer applyTransactionTimeout(Integer queryTimeout, Integer transactionTimeout) {
+    if (transactionTimeout == null || transactionTimeout <= 0) {
+      return queryTimeout;
     }
-    if (queryTimeout == null || queryTimeout == 0 || transactionTimeout < queryTimeout) {
-      statement.setQueryTimeout(transactionTimeout);
+    if (queryTimeout == null || queryTimeout <= 0 || transactionTimeout < queryTimeout) {
+      return transactionTimeout;
     }
+    return queryTimeout;
+  }
+
+  /**
+   * Limits the execution of a statement, from subscription to its first element, e.g. the first mapped row, or to its
+   * completion when it has none, to the given timeout.
+   * <p>
+   * Like a JDBC query timeout it does not cover reading the following rows, so a slow consumer is not cancelled.
+   * R2DBC has no statement level timeout, so on expiry the execution is cancelled, which lets the driver abort the
+   * query and hand the connection back, and an {@link R2dbcTimeoutException} is signalled.
+   * </p>
+   * @param source the statement execution, e.g. the rows mapped from {@link io.r2dbc.spi.Statement#execute()}
+   * @param timeout a timeout in seconds, zero or {@code null} for no limit
+   * @param sql the statement, for the error message
+   * @return the time limited execution
+   */
+  public static <T> Flux<T> applyTimeout(Flux<T> source, Integer timeout, String sql) {
+    if (timeout == null || timeout <= 0) {
+      return source;
+    }
+    return source.timeout(Mono.delay(Duration.ofSeconds(timeout)), first -> Mono.never(),
+        Flux.defer(() -> Flux.error(timeoutException(timeout, sql))));
+  }
+
+  public static <T> Mono<T> applyTimeout(Mono<T> source, Integer timeout, String sql) {
+    if (timeout == null || timeout <= 0) {
+      return source;
+    }
+    return source.timeout(Duration.ofSeconds(timeout), Mono.error(() -> timeoutException(timeout, sql)));
+  }
+
+  private static R2dbcTimeoutException timeoutException(Integer timeout, String sql) {
+    return new R2dbcTimeoutException("Statement cancelled after exceeding its timeout of " + timeout + " seconds: " + sql);
   }
 
 }
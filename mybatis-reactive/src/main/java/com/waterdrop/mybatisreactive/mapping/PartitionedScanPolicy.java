@@ -0,0 +1,123 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.mapping;
+
+/**
+ * How a large select is split into ranges of a numeric or temporal key that are read concurrently, each on a
+ * connection of its own.
+ * <p>
+ * The select is wrapped as a derived table and filtered on {@link #getColumn()} per range. The ranges are split evenly
+ * between the least and the greatest key of the select, or at the quantiles of the keys returned by a sample statement,
+ * which also suits skewed keys and keys of any comparable type. Rows with a null key are read with the first range.
+ * Ranges are read in key order when {@link #isOrdered()}, so a select ordered by its key stays ordered; a select
+ * ordered by its key descending needs {@link #isDescending()} too, which reverses the ranges and nulls come last.
+ */
+public class PartitionedScanPolicy {
+
+  private final String column;
+  private final int partitions;
+  private final boolean ordered;
+  private final boolean descending;
+  private final String sampleStatement;
+
+  private PartitionedScanPolicy(Builder builder) {
+    this.column = builder.column;
+    this.partitions = builder.partitions;
+    this.ordered = builder.ordered;
+    this.descending = builder.descending;
+    this.sampleStatement = builder.sampleStatement;
+  }
+
+  public static Builder builder(String column) {
+    return new Builder(column);
+  }
+
+  /**
+   * Returns the result column of the select that is split into ranges.
+   */
+  public String getColumn() {
+    return column;
+  }
+
+  public int getPartitions() {
+    return partitions;
+  }
+
+  public boolean isOrdered() {
+    return ordered;
+  }
+
+  public boolean isDescending() {
+    return descending;
+  }
+
+  /**
+   * Returns the id of the statement that selects sampled keys, taking the parameter of the scanned select;
+   * {@code null} when the ranges are split between the least and the greatest key.
+   */
+  public String getSampleStatement() {
+    return sampleStatement;
+  }
+
+  public static class Builder {
+
+    private final String column;
+    private int partitions = 4;
+    private boolean ordered;
+    private boolean descending;
+    private String sampleStatement;
+
+    private Builder(String column) {
+      if (column == null || column.isEmpty()) {
+        throw new IllegalArgumentException("column must not be empty");
+      }
+      this.column = column;
+    }
+
+    /**
+     * @param partitions
+     *          the number of ranges, read on as many connections at once
+     */
+    public Builder partitions(int partitions) {
+      if (partitions < 1) {
+        throw new IllegalArgumentException("partitions must be at least 1");
+      }
+      this.partitions = partitions;
+      return this;
+    }
+
+    public Builder ordered(boolean ordered) {
+      this.ordered = ordered;
+      return this;
+    }
+
+    public Builder descending(boolean descending) {
+      this.descending = descending;
+      return this;
+    }
+
+    public Builder sampleStatement(String sampleStatement) {
+      this.sampleStatement = sampleStatement == null || sampleStatement.isEmpty() ? null : sampleStatement;
+      return this;
+    }
+
+    public PartitionedScanPolicy build() {
+      return new PartitionedScanPolicy(this);
+    }
+
+  }
+
+}
@@ -15,11 +15,19 @@
  */
 package com.waterdrop.mybatisreactive.mapping;
 
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
 import com.waterdrop.mybatisreactive.transaction.ReactiveTransactionFactory;
+import com.waterdrop.mybatisreactive.transaction.ReadWriteSplittingTransaction;
+import com.waterdrop.mybatisreactive.transaction.ShardingTransaction;
 import io.r2dbc.spi.ConnectionFactory;
+import org.apache.ibatis.session.TransactionIsolationLevel;
 import org.apache.ibatis.transaction.TransactionFactory;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author Clinton Begin
@@ -28,8 +36,21 @@ public final class ReactiveEnvironment {
   private final String id;
   private final ReactiveTransactionFactory transactionFactory;
   private final ConnectionFactory connectionFactory;
+  private final List<ConnectionFactory> replicas;
+  private final ReplicaSelector replicaSelector;
+  private final List<ConnectionFactory> shards;
 
   public ReactiveEnvironment(String id, ReactiveTransactionFactory transactionFactory, ConnectionFactory connectionFactory) {
+    this(id, transactionFactory, connectionFactory, Collections.emptyList(), null);
+  }
+
+  public ReactiveEnvironment(String id, ReactiveTransactionFactory transactionFactory, ConnectionFactory connectionFactory,
+      List<ConnectionFactory> replicas, ReplicaSelector replicaSelector) {
+    this(id, transactionFactory, connectionFactory, replicas, replicaSelector, Collections.emptyList());
+  }
+
+  public ReactiveEnvironment(String id, ReactiveTransactionFactory transactionFactory, ConnectionFactory connectionFactory,
+      List<ConnectionFactory> replicas, ReplicaSelector replicaSelector, List<ConnectionFactory> shards) {
     if (id == null) {
       throw new IllegalArgumentException("Parameter 'id' must not be null");
     }
@@ -42,12 +63,21 @@ public final class ReactiveEnvironment {
     }
     this.transactionFactory = transactionFactory;
     this.connectionFactory = connectionFactory;
+    this.replicas = replicas == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(replicas));
+    this.replicaSelector = replicaSelector == null ? ReplicaSelector.roundRobin() : replicaSelector;
+    this.shards = shards == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(shards));
+    if (!this.replicas.isEmpty() && !this.shards.isEmpty()) {
+      throw new IllegalArgumentException("An environment cannot have both replicas and shards");
+    }
   }
 
   public static class Builder {
     private final String id;
     private ReactiveTransactionFactory transactionFactory;
     private ConnectionFactory connectionFactory;
+    private final List<ConnectionFactory> replicas = new ArrayList<>();
+    private ReplicaSelector replicaSelector;
+    private final List<ConnectionFactory> shards = new ArrayList<>();
 
     public Builder(String id) {
       this.id = id;
@@ -63,12 +93,28 @@ public final class ReactiveEnvironment {
       return this;
     }
 
+    public Builder replicas(ConnectionFactory... replicas) {
+      this.replicas.addAll(Arrays.asList(replicas));
+      return this;
+    }
+
+    public Builder replicaSelector(ReplicaSelector replicaSelector) {
+      this.replicaSelector = replicaSelector;
+      return this;
+    }
+
+    public Builder shards(ConnectionFactory... shards) {
+      this.shards.addAll(Arrays.asList(shards));
+      return this;
+    }
+
     public String id() {
       return this.id;
     }
 
     public ReactiveEnvironment build() {
-      return new ReactiveEnvironment(this.id, this.transactionFactory, this.connectionFactory);
+      return new ReactiveEnvironment(this.id, this.transactionFactory, this.connectionFactory, this.replicas, this.replicaSelector,
+          this.shards);
     }
 
   }
@@ -84,4 +130,39 @@ public final class ReactiveEnvironment {
   public ConnectionFactory getConnectionFactory() {
     return connectionFactory;
   }
+
+  /**
+   * Returns the read replicas of the primary {@link #getConnectionFactory()}. Sessions of an environment with replicas
+   * run selects on a replica while they commit automatically, see
+   * {@link com.waterdrop.mybatisreactive.transaction.ReadWriteSplittingTransaction}.
+   */
+  public List<ConnectionFactory> getReplicas() {
+    return replicas;
+  }
+
+  public ReplicaSelector getReplicaSelector() {
+    return replicaSelector;
+  }
+
+  /**
+   * Returns the databases that statements with a {@link ShardingStrategy} are spread over. Statements without one run
+   * on {@link #getConnectionFactory()}, see {@link com.waterdrop.mybatisreactive.transaction.ShardingTransaction}.
+   */
+  public List<ConnectionFactory> getShards() {
+    return shards;
+  }
+
+  /**
+   * Opens a transaction on {@link #getConnectionFactory()}, which spreads statements over the shards or replicas of the
+   * environment when it has some.
+   */
+  public ReactiveTransaction newTransaction(TransactionIsolationLevel level, boolean autoCommit) {
+    ReactiveTransaction transaction = transactionFactory.newTransaction(connectionFactory, level, autoCommit);
+    if (!shards.isEmpty()) {
+      return new ShardingTransaction(transaction, this, level);
+    } else if (!replicas.isEmpty()) {
+      return new ReadWriteSplittingTransaction(transaction, this, level);
+    }
+    return transaction;
+  }
 }
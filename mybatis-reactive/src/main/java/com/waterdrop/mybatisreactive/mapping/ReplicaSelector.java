@@ -0,0 +1,102 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.mapping;
+
+import io.r2dbc.spi.ConnectionFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the replica a session reads from, see {@link ReactiveEnvironment#getReplicas()}.
+ */
+public interface ReplicaSelector {
+
+  /**
+   * Chooses one of the replicas for a new connection.
+   *
+   * @param replicas
+   *          the replicas of the environment, never empty
+   * @return the chosen replica
+   */
+  ConnectionFactory select(List<ConnectionFactory> replicas);
+
+  /**
+   * Called when the connection taken from a replica returned by {@link #select(List)} is given back.
+   */
+  default void release(ConnectionFactory replica) {
+    // NOP
+  }
+
+  static ReplicaSelector roundRobin() {
+    return new RoundRobin();
+  }
+
+  /**
+   * Chooses the replica with the fewest connections handed out by this selector, the first of them on a tie.
+   */
+  static ReplicaSelector leastInFlight() {
+    return new LeastInFlight();
+  }
+
+  class RoundRobin implements ReplicaSelector {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public ConnectionFactory select(List<ConnectionFactory> replicas) {
+      return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+
+  }
+
+  class LeastInFlight implements ReplicaSelector {
+
+    private final Map<ConnectionFactory, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized ConnectionFactory select(List<ConnectionFactory> replicas) {
+      ConnectionFactory selected = null;
+      int least = Integer.MAX_VALUE;
+      for (ConnectionFactory replica : replicas) {
+        int count = counter(replica).get();
+        if (count < least) {
+          selected = replica;
+          least = count;
+        }
+      }
+      counter(selected).incrementAndGet();
+      return selected;
+    }
+
+    @Override
+    public void release(ConnectionFactory replica) {
+      counter(replica).decrementAndGet();
+    }
+
+    public int getInFlight(ConnectionFactory replica) {
+      return counter(replica).get();
+    }
+
+    private AtomicInteger counter(ConnectionFactory replica) {
+      return inFlight.computeIfAbsent(replica, key -> new AtomicInteger());
+    }
+
+  }
+
+}
@@ -0,0 +1,223 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.mapping;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuple2;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * How a statement without a shard key runs on every shard of the environment, and how the results of the shards are
+ * combined.
+ * <p>
+ * Rows are merged as they arrive, or, when the statement declares the order of its {@code ORDER BY}, merged into one
+ * sorted stream while they are read. The row bounds of the statement apply to the merged rows, so each shard is
+ * queried for its first {@code offset + limit} rows. A statement that selects one aggregate value per shard has it
+ * combined instead. Shards of a session run on separate connections, so the session has to commit automatically.
+ */
+public class ScatterGatherPolicy {
+
+  public enum Aggregate {
+    NONE, COUNT, SUM, MIN, MAX
+  }
+
+  private final List<SortKey> orderBy;
+  private final Aggregate aggregate;
+
+  private ScatterGatherPolicy(Builder builder) {
+    this.orderBy = Collections.unmodifiableList(new ArrayList<>(builder.orderBy));
+    this.aggregate = builder.aggregate;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Aggregate getAggregate() {
+    return aggregate;
+  }
+
+  /**
+   * Returns the bounds each shard is queried with.
+   */
+  public RowBounds getShardRowBounds(RowBounds rowBounds) {
+    if (rowBounds instanceof ShardAwareRowBounds) {
+      return ((ShardAwareRowBounds) rowBounds).forShard();
+    }
+    if (rowBounds == null || rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT) {
+      return RowBounds.DEFAULT;
+    }
+    return new RowBounds(RowBounds.NO_ROW_OFFSET, (int) Math.min(Integer.MAX_VALUE, (long) rowBounds.getOffset() + rowBounds.getLimit()));
+  }
+
+  /**
+   * Combines the results of the shards.
+   *
+   * @param ms
+   *          the statement that ran on the shards
+   * @param shards
+   *          the results of each shard, sorted if an order is declared
+   * @param rowBounds
+   *          the bounds of the statement
+   * @param shardRowBounds
+   *          the bounds each shard was queried with, see {@link #getShardRowBounds(RowBounds)}
+   * @return the combined results
+   */
+  @SuppressWarnings("unchecked")
+  public <E> Flux<E> gather(MappedStatement ms, List<Flux<E>> shards, RowBounds rowBounds, List<RowBounds> shardRowBounds) {
+    if (aggregate != Aggregate.NONE) {
+      return Flux.merge(shards).reduce((a, b) -> (E) combine(a, b)).flux();
+    }
+    Flux<E> merged = orderBy.isEmpty()
+        ? Flux.merge(shards)
+        : Flux.mergeOrdered(comparator(ms.getConfiguration()), shards.toArray(new Flux[0]));
+    if (rowBounds == null) {
+      return merged;
+    }
+    long offset = rowBounds.getOffset();
+    long end = rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT ? Long.MAX_VALUE : offset + rowBounds.getLimit();
+    if (rowBounds instanceof ShardAwareRowBounds) {
+      // every shard is read to its end, so that what their bounds record is complete
+      return merged.index()
+          .filter(row -> row.getT1() >= offset && row.getT1() < end)
+          .map(Tuple2::getT2)
+          .doOnComplete(() -> ((ShardAwareRowBounds) rowBounds).gather(shardRowBounds));
+    }
+    Flux<E> skipped = merged.skip(offset);
+    return end == Long.MAX_VALUE ? skipped : skipped.take(end - offset);
+  }
+
+  private Comparator<Object> comparator(Configuration configuration) {
+    Comparator<Object> comparator = null;
+    for (SortKey key : orderBy) {
+      Comparator<Object> next = (a, b) -> compareValues(key.valueOf(configuration, a), key.valueOf(configuration, b));
+      next = key.descending ? next.reversed() : next;
+      comparator = comparator == null ? next : comparator.thenComparing(next);
+    }
+    return comparator;
+  }
+
+  private Object combine(Object a, Object b) {
+    switch (aggregate) {
+      case MIN:
+        return compareValues(a, b) <= 0 ? a : b;
+      case MAX:
+        return compareValues(a, b) >= 0 ? a : b;
+      default:
+        return add((Number) a, (Number) b);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int compareValues(Object a, Object b) {
+    // nulls sort first, as in MySQL and SQL Server
+    if (a == null || b == null) {
+      return a == null ? (b == null ? 0 : -1) : 1;
+    }
+    return ((Comparable<Object>) a).compareTo(b);
+  }
+
+  private static Number add(Number a, Number b) {
+    // the combined value takes the wider type of the shard values, a driver may return them as Integer or Long
+    if (a instanceof BigDecimal || b instanceof BigDecimal
+        || (isBigInteger(a) || isBigInteger(b)) && (isFloating(a) || isFloating(b))) {
+      return new BigDecimal(a.toString()).add(new BigDecimal(b.toString()));
+    } else if (isBigInteger(a) || isBigInteger(b)) {
+      return new BigInteger(a.toString()).add(new BigInteger(b.toString()));
+    } else if (isFloating(a) || isFloating(b)) {
+      double sum = a.doubleValue() + b.doubleValue();
+      return a instanceof Float && b instanceof Float ? (Number) (float) sum : (Number) sum;
+    }
+    long sum = Math.addExact(a.longValue(), b.longValue());
+    return a instanceof Integer && b instanceof Integer && sum == (int) sum ? (Number) (int) sum : (Number) sum;
+  }
+
+  private static boolean isBigInteger(Number value) {
+    return value instanceof BigInteger;
+  }
+
+  private static boolean isFloating(Number value) {
+    return value instanceof Double || value instanceof Float;
+  }
+
+  private static class SortKey {
+    private final String property;
+    private final boolean descending;
+
+    SortKey(String property, boolean descending) {
+      this.property = property;
+      this.descending = descending;
+    }
+
+    Object valueOf(Configuration configuration, Object row) {
+      if (configuration.getTypeHandlerRegistry().hasTypeHandler(row.getClass())) {
+        return row;
+      }
+      MetaObject metaObject = configuration.newMetaObject(row);
+      return metaObject.getValue(property);
+    }
+  }
+
+  public static class Builder {
+
+    private final List<SortKey> orderBy = new ArrayList<>();
+    private Aggregate aggregate = Aggregate.NONE;
+
+    /**
+     * Declares the order the statement sorts its rows in, as result properties each followed by an optional
+     * {@code ASC} or {@code DESC}, e.g. {@code "createdAt DESC, id"}.
+     */
+    public Builder orderBy(String orderBy) {
+      this.orderBy.clear();
+      for (String column : orderBy.split(",")) {
+        String[] parts = column.trim().split("\\s+");
+        if (parts[0].isEmpty()) {
+          continue;
+        }
+        if (parts.length > 2 || (parts.length == 2 && !parts[1].equalsIgnoreCase("asc") && !parts[1].equalsIgnoreCase("desc"))) {
+          throw new IllegalArgumentException("Invalid order '" + column.trim() + "', expected a property followed by ASC or DESC");
+        }
+        this.orderBy.add(new SortKey(parts[0], parts.length == 2 && parts[1].equalsIgnoreCase("desc")));
+      }
+      return this;
+    }
+
+    /**
+     * Declares that the statement selects a single value per shard, combined by adding them up ({@code COUNT} and
+     * {@code SUM}) or keeping the least or greatest one.
+     */
+    public Builder aggregate(Aggregate aggregate) {
+      this.aggregate = aggregate;
+      return this;
+    }
+
+    public ScatterGatherPolicy build() {
+      return new ScatterGatherPolicy(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,42 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.mapping;
+
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.List;
+
+/**
+ * {@link RowBounds} that record something about the query they bound, such as the total row count of a page. When a
+ * statement runs on every shard (see {@link ScatterGatherPolicy}), each shard is queried with its own bounds and what
+ * they recorded is combined into these ones.
+ */
+public interface ShardAwareRowBounds {
+
+  /**
+   * Returns new bounds for the query of one shard, selecting the first {@code offset + limit} rows of it.
+   */
+  RowBounds forShard();
+
+  /**
+   * Combines the bounds the shards were queried with, once every shard query completed.
+   *
+   * @param shardRowBounds
+   *          the bounds returned by {@link #forShard()}, one per shard
+   */
+  void gather(List<RowBounds> shardRowBounds);
+
+}
@@ -0,0 +1,148 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.mapping;
+
+import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Chooses the shard of {@link ReactiveEnvironment#getShards()} a statement runs on from its parameter. Strategies are
+ * declared per statement or mapper namespace with
+ * {@link com.waterdrop.mybatisreactive.session.ReactiveConfiguration#setShardingStrategy(String, ShardingStrategy)}.
+ */
+@FunctionalInterface
+public interface ShardingStrategy {
+
+  /**
+   * @param ms
+   *          the statement to run
+   * @param parameter
+   *          the parameter object of the statement
+   * @param shardCount
+   *          the number of shards of the environment
+   * @return the index of the shard, from 0 to {@code shardCount - 1}
+   */
+  int getShard(MappedStatement ms, Object parameter, int shardCount);
+
+  /**
+   * Spreads the values of a parameter property over the shards by the hash code of their text, e.g.
+   * {@code hash("tenantId")}. Numbers, character sequences and UUIDs are supported; equal numbers go to the same shard
+   * whatever their type and scale, e.g. {@code 5}, {@code 5L}, {@code 5.0d} and {@code new BigDecimal("5.0")}.
+   */
+  static ShardingStrategy hash(String property) {
+    return new HashSharding(property);
+  }
+
+  /**
+   * Assigns ranges of a numeric parameter property to the shards: values below {@code upperBounds[0]} go to the first
+   * shard, values below {@code upperBounds[1]} to the second and so on, the rest to the shard after the last bound.
+   */
+  static ShardingStrategy range(String property, long... upperBounds) {
+    return new RangeSharding(property, upperBounds);
+  }
+
+  abstract class PropertySharding implements ShardingStrategy {
+
+    protected final String property;
+
+    protected PropertySharding(String property) {
+      this.property = property;
+    }
+
+    /**
+     * Returns the sharding property of the parameter, or the parameter itself when it is a single simple value.
+     */
+    protected Object getValue(MappedStatement ms, Object parameter) {
+      Configuration configuration = ms.getConfiguration();
+      Object value = null;
+      if (parameter != null && configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+        value = parameter;
+      } else if (parameter != null) {
+        MetaObject metaObject = configuration.newMetaObject(parameter);
+        value = metaObject.hasGetter(property) ? metaObject.getValue(property) : null;
+      }
+      if (value == null) {
+        throw new ReactiveMybatisException("Cannot choose the shard of statement " + ms.getId() + ", its parameter has no value for '" + property + "'");
+      }
+      return value;
+    }
+
+  }
+
+  class HashSharding extends PropertySharding {
+
+    public HashSharding(String property) {
+      super(property);
+    }
+
+    @Override
+    public int getShard(MappedStatement ms, Object parameter, int shardCount) {
+      return Math.floorMod(canonicalText(ms, getValue(ms, parameter)).hashCode(), shardCount);
+    }
+
+    /**
+     * Returns a text of the value that is the same in every JVM, unlike the hash code of most objects.
+     */
+    protected String canonicalText(MappedStatement ms, Object value) {
+      if ((value instanceof Double || value instanceof Float) && Double.isFinite(((Number) value).doubleValue())) {
+        // the decimal text of the value, 5.0d reads "5.0" otherwise
+        value = new BigDecimal(value.toString());
+      }
+      if (value instanceof BigDecimal) {
+        return ((BigDecimal) value).stripTrailingZeros().toPlainString();
+      }
+      if (value instanceof Number || value instanceof CharSequence || value instanceof UUID) {
+        return value.toString();
+      }
+      throw new ReactiveMybatisException("Cannot choose the shard of statement " + ms.getId() + ", '" + property
+          + "' is neither a number, a character sequence nor a UUID: " + value.getClass().getName());
+    }
+
+  }
+
+  class RangeSharding extends PropertySharding {
+
+    private final long[] upperBounds;
+
+    public RangeSharding(String property, long... upperBounds) {
+      super(property);
+      this.upperBounds = upperBounds.clone();
+      Arrays.sort(this.upperBounds);
+    }
+
+    @Override
+    public int getShard(MappedStatement ms, Object parameter, int shardCount) {
+      Object value = getValue(ms, parameter);
+      if (!(value instanceof Number)) {
+        throw new ReactiveMybatisException("Cannot choose the shard of statement " + ms.getId() + ", '" + property + "' is not a number: " + value);
+      }
+      long key = ((Number) value).longValue();
+      int shard = 0;
+      while (shard < upperBounds.length && key >= upperBounds[shard]) {
+        shard++;
+      }
+      return shard;
+    }
+
+  }
+
+}
@@ -0,0 +1,133 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.mapping;
+
+import com.waterdrop.mybatisreactive.retry.RetryPolicy;
+
+/**
+ * Reactive execution settings of a mapped statement that {@link org.apache.ibatis.mapping.MappedStatement} cannot
+ * carry, registered with {@link com.waterdrop.mybatisreactive.session.ReactiveConfiguration#getStatementOptions(String)}.
+ */
+public class StatementOptions {
+
+  private boolean coalesce;
+  private RetryPolicy retryPolicy;
+  private boolean hedged;
+  private long hedgeDelay;
+  private double hedgePercentile = 0.95;
+  private int resultSizeHint;
+  private boolean readOnly;
+  private ScatterGatherPolicy scatterGather;
+  private PartitionedScanPolicy partitionedScan;
+
+  public boolean isCoalesce() {
+    return coalesce;
+  }
+
+  public StatementOptions setCoalesce(boolean coalesce) {
+    this.coalesce = coalesce;
+    return this;
+  }
+
+  public boolean isHedged() {
+    return hedged;
+  }
+
+  public StatementOptions setHedged(boolean hedged) {
+    this.hedged = hedged;
+    return this;
+  }
+
+  /**
+   * Returns the fixed hedge delay in milliseconds, not positive when the delay follows {@link #getHedgePercentile()}.
+   */
+  public long getHedgeDelay() {
+    return hedgeDelay;
+  }
+
+  public StatementOptions setHedgeDelay(long hedgeDelay) {
+    this.hedgeDelay = hedgeDelay;
+    return this;
+  }
+
+  public double getHedgePercentile() {
+    return hedgePercentile;
+  }
+
+  public StatementOptions setHedgePercentile(double hedgePercentile) {
+    this.hedgePercentile = hedgePercentile;
+    return this;
+  }
+
+  /**
+   * Returns the expected number of rows, used to size the map of a {@code selectMap}; not positive when unknown.
+   */
+  public int getResultSizeHint() {
+    return resultSizeHint;
+  }
+
+  public StatementOptions setResultSizeHint(int resultSizeHint) {
+    this.resultSizeHint = resultSizeHint;
+    return this;
+  }
+
+  /**
+   * Returns whether the statement may read from a replica even inside a transaction, as it does not need to see the
+   * work of the transaction.
+   */
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  public StatementOptions setReadOnly(boolean readOnly) {
+    this.readOnly = readOnly;
+    return this;
+  }
+
+  /**
+   * Returns how the statement runs on every shard, {@code null} when it runs on one.
+   */
+  public ScatterGatherPolicy getScatterGather() {
+    return scatterGather;
+  }
+
+  public StatementOptions setScatterGather(ScatterGatherPolicy scatterGather) {
+    this.scatterGather = scatterGather;
+    return this;
+  }
+
+  /**
+   * Returns how the select is read as concurrent range scans, {@code null} when it is read at once.
+   */
+  public PartitionedScanPolicy getPartitionedScan() {
+    return partitionedScan;
+  }
+
+  public StatementOptions setPartitionedScan(PartitionedScanPolicy partitionedScan) {
+    this.partitionedScan = partitionedScan;
+    return this;
+  }
+
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  public StatementOptions setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+    return this;
+  }
+
+}
@@ -0,0 +1,57 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.metrics;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+/**
+ * Tells cancellations requested by the subscriber of a statement from early terminations the framework requests
+ * itself, e.g. {@code selectOne} stopping at a second row or the losing execution of a hedged read.
+ * A publisher wrapped by {@link #of(Flux)} marks its scope when it is cancelled from downstream, so cancellations
+ * its own operators request upstream are not counted.
+ */
+public class CancellationScope {
+
+  private volatile boolean cancelled;
+
+  public static <T> Flux<T> of(Flux<T> source) {
+    return Flux.deferContextual(outer -> {
+      CancellationScope scope = new CancellationScope();
+      return source.doOnCancel(() -> scope.cancelled = isRequestedBySubscriber(outer))
+          .contextWrite(context -> context.put(CancellationScope.class, scope));
+    });
+  }
+
+  public static <T> Mono<T> of(Mono<T> source) {
+    return Mono.deferContextual(outer -> {
+      CancellationScope scope = new CancellationScope();
+      return source.doOnCancel(() -> scope.cancelled = isRequestedBySubscriber(outer))
+          .contextWrite(context -> context.put(CancellationScope.class, scope));
+    });
+  }
+
+  /**
+   * Returns whether a cancellation seen within the given context came from the subscriber of the statement,
+   * {@code true} outside of any scope.
+   */
+  public static boolean isRequestedBySubscriber(ContextView context) {
+    CancellationScope scope = context.getOrDefault(CancellationScope.class, null);
+    return scope == null || scope.cancelled;
+  }
+
+}
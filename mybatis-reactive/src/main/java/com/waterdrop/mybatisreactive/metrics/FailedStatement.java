@@ -0,0 +1,44 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.metrics;
+
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Remembers the last statement that failed in a chain that put an instance into its Reactor Context, so that a
+ * transaction run again can be attributed to the statement that caused it.
+ */
+public class FailedStatement {
+
+  private final AtomicReference<String> statementId = new AtomicReference<>();
+
+  public static void mark(ContextView context, String statementId) {
+    FailedStatement failedStatement = context.getOrDefault(FailedStatement.class, null);
+    if (failedStatement != null) {
+      failedStatement.statementId.set(statementId);
+    }
+  }
+
+  /**
+   * Returns the id of the statement that failed last and forgets it, {@code null} if none failed since.
+   */
+  public String getAndClear() {
+    return statementId.getAndSet(null);
+  }
+
+}
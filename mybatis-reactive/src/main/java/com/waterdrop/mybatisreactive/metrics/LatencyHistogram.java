@@ -0,0 +1,103 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with buckets growing by a quarter power of two (about 19%), from one microsecond up to
+ * about a minute. Once it holds {@value #DECAY_THRESHOLD} samples all counts are halved, so percentiles follow recent
+ * behaviour instead of the whole lifetime.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKETS = 4;
+  private static final int BUCKETS = 26 * SUB_BUCKETS + 1;
+  private static final long DECAY_THRESHOLD = 1 << 16;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong total = new AtomicLong();
+
+  public void record(long nanos) {
+    counts.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMicros(nanos)));
+    if (total.incrementAndGet() >= DECAY_THRESHOLD) {
+      decay();
+    }
+  }
+
+  public long getCount() {
+    return total.get();
+  }
+
+  /**
+   * @param percentile
+   *          between 0 and 1, e.g. 0.95
+   * @return upper bound of the bucket holding the percentile, zero when nothing was recorded
+   */
+  public Duration getPercentile(double percentile) {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    if (count == 0) {
+      return Duration.ZERO;
+    }
+    long rank = (long) Math.ceil(percentile * count);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(upperBoundOf(i)));
+      }
+    }
+    return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(upperBoundOf(BUCKETS - 1)));
+  }
+
+  private synchronized void decay() {
+    if (total.get() < DECAY_THRESHOLD) {
+      return;
+    }
+    long remaining = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      long count = counts.get(i);
+      counts.addAndGet(i, -(count - count / 2));
+      remaining += count / 2;
+    }
+    total.set(remaining);
+  }
+
+  static int bucketOf(long micros) {
+    if (micros <= 1) {
+      return 0;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    int sub = (int) ((micros - (1L << exponent)) * SUB_BUCKETS >>> exponent);
+    return Math.min(exponent * SUB_BUCKETS + sub + 1, BUCKETS - 1);
+  }
+
+  static long upperBoundOf(int bucket) {
+    if (bucket == 0) {
+      return 1;
+    }
+    int exponent = (bucket - 1) / SUB_BUCKETS;
+    int sub = (bucket - 1) % SUB_BUCKETS;
+    return (1L << exponent) + ((sub + 1L) << exponent) / SUB_BUCKETS;
+  }
+
+}
@@ -0,0 +1,42 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Execution counters of all mapped statements of a configuration, keyed by statement id.
+ */
+public class StatementMetrics {
+
+  private final Map<String, StatementStats> stats = new ConcurrentHashMap<>();
+
+  public StatementStats getStats(String statementId) {
+    StatementStats statementStats = stats.get(statementId);
+    return statementStats != null ? statementStats : stats.computeIfAbsent(statementId, StatementStats::new);
+  }
+
+  public Map<String, StatementStats> getAllStats() {
+    return Collections.unmodifiableMap(stats);
+  }
+
+  public void reset() {
+    stats.clear();
+  }
+
+}
@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.metrics;
+
+import io.r2dbc.spi.R2dbcTimeoutException;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one mapped statement. An execution ends either completed, failed or cancelled by its subscriber;
+ * timeouts are counted as failures too. Latency is the time until the first row, or until completion without rows.
+ */
+public class StatementStats {
+
+  private final String statementId;
+  private final LongAdder executions = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder cancellations = new LongAdder();
+  private final LongAdder transactionRetries = new LongAdder();
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private volatile int lastResultSize;
+
+  public StatementStats(String statementId) {
+    this.statementId = statementId;
+  }
+
+  public void recordExecution() {
+    executions.increment();
+  }
+
+  public void recordError(Throwable error) {
+    errors.increment();
+    if (error instanceof R2dbcTimeoutException) {
+      timeouts.increment();
+    }
+  }
+
+  public void recordCancellation() {
+    cancellations.increment();
+  }
+
+  public void recordTransactionRetry() {
+    transactionRetries.increment();
+  }
+
+  public void recordLatency(long nanos) {
+    latency.record(nanos);
+  }
+
+  public void recordResultSize(int size) {
+    lastResultSize = size;
+  }
+
+  public String getStatementId() {
+    return statementId;
+  }
+
+  public long getExecutions() {
+    return executions.sum();
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+
+  public long getCancellations() {
+    return cancellations.sum();
+  }
+
+  /**
+   * Returns how often a failure of the statement made a whole transaction run again,
+   * see {@link com.waterdrop.mybatisreactive.transaction.ReactiveTransactionalOperator}.
+   */
+  public long getTransactionRetries() {
+    return transactionRetries.sum();
+  }
+
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+
+  /**
+   * Returns the number of entries of the last {@code selectMap} of the statement.
+   */
+  public int getLastResultSize() {
+    return lastResultSize;
+  }
+
+  @Override
+  public String toString() {
+    return statementId + "[executions=" + getExecutions() + ", errors=" + getErrors() + ", timeouts=" + getTimeouts()
+        + ", cancellations=" + getCancellations() + ", transactionRetries=" + getTransactionRetries() + "]";
+  }
+
+}
@@ -15,6 +15,7 @@
  */
 package com.waterdrop.mybatisreactive.reflection;
 
+import com.waterdrop.mybatisreactive.session.ReactiveResultHandler;
 import com.waterdrop.mybatisreactive.toolkit.KotlinDetector;
 import com.waterdrop.mybatisreactive.toolkit.KotlinReflectionUtils;
 import kotlin.coroutines.Continuation;
@@ -95,6 +96,7 @@ public class SuspendParamNameResolver {
 
   private static boolean isSpecialParameter(Class<?> clazz, boolean suspendedDeclaredMethod) {
     return RowBounds.class.isAssignableFrom(clazz) || ResultHandler.class.isAssignableFrom(clazz)
+            || ReactiveResultHandler.class.isAssignableFrom(clazz)
             || (suspendedDeclaredMethod && Continuation.class.isAssignableFrom(clazz));
   }
 
@@ -0,0 +1,245 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.retry;
+
+import io.r2dbc.spi.R2dbcException;
+import io.r2dbc.spi.R2dbcRollbackException;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import io.r2dbc.spi.R2dbcTransientException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * How an execution that failed with a transient error is attempted again: the number of attempts, an exponential
+ * backoff with jitter between them, and the errors that qualify.
+ * <p>
+ * By default every {@link R2dbcTransientException} qualifies except {@link R2dbcTimeoutException}, as a statement that
+ * timed out would most likely time out again.
+ */
+public class RetryPolicy {
+
+  private final int maxAttempts;
+  private final Duration minBackoff;
+  private final Duration maxBackoff;
+  private final double jitter;
+  private final List<Class<? extends Throwable>> retryOn;
+  private final List<Class<? extends Throwable>> abortOn;
+  private final Set<String> retryOnSqlStates;
+  private final Set<Integer> retryOnErrorCodes;
+
+  private RetryPolicy(Builder builder) {
+    this.maxAttempts = builder.maxAttempts;
+    this.minBackoff = builder.minBackoff;
+    this.maxBackoff = builder.maxBackoff;
+    this.jitter = builder.jitter;
+    this.retryOn = Collections.unmodifiableList(new ArrayList<>(builder.retryOn));
+    this.abortOn = Collections.unmodifiableList(new ArrayList<>(builder.abortOn));
+    this.retryOnSqlStates = Collections.unmodifiableSet(new HashSet<>(builder.retryOnSqlStates));
+    this.retryOnErrorCodes = Collections.unmodifiableSet(new HashSet<>(builder.retryOnErrorCodes));
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Starts a policy for whole transactions that lost against a concurrent one: rollbacks reported by the driver,
+   * serialization failures and deadlocks (SQLSTATE 40001 and 40P01), and the MySQL deadlock and lock wait timeout
+   * errors 1213 and 1205.
+   */
+  public static Builder forTransactions() {
+    return new Builder()
+        .retryOn(R2dbcRollbackException.class)
+        .abortOn()
+        .retryOnSqlStates("40001", "40P01")
+        .retryOnErrorCodes(1213, 1205);
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public Duration getMinBackoff() {
+    return minBackoff;
+  }
+
+  public Duration getMaxBackoff() {
+    return maxBackoff;
+  }
+
+  public double getJitter() {
+    return jitter;
+  }
+
+  public boolean isRetryable(Throwable error) {
+    return (matches(retryOn, error) || matchesCode(error)) && !matches(abortOn, error);
+  }
+
+  /**
+   * Resubscribes to {@code execution} when it fails with a retryable error before emitting anything; once an element
+   * was delivered the error is passed on, as the subscriber would otherwise see it twice.
+   *
+   * @param execution
+   *          the execution, deferred so that each attempt starts over
+   * @param beforeRetry
+   *          work to complete before the next attempt, such as releasing the failed connection
+   * @return the execution with retries
+   */
+  public <T> Flux<T> apply(Flux<T> execution, Supplier<Mono<Void>> beforeRetry) {
+    if (maxAttempts <= 1) {
+      return execution;
+    }
+    return Flux.defer(() -> {
+      AtomicBoolean emitted = new AtomicBoolean();
+      Retry retry = Retry.backoff(maxAttempts - 1L, minBackoff)
+          .maxBackoff(maxBackoff)
+          .jitter(jitter)
+          .filter(error -> !emitted.get() && isRetryable(error))
+          .doBeforeRetryAsync(signal -> beforeRetry.get())
+          .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+      return execution.doOnNext(element -> emitted.set(true)).retryWhen(retry);
+    });
+  }
+
+  private boolean matchesCode(Throwable error) {
+    // the driver error may be wrapped by the session
+    for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+      if (cause instanceof R2dbcException) {
+        R2dbcException r2dbcException = (R2dbcException) cause;
+        return retryOnSqlStates.contains(r2dbcException.getSqlState()) || retryOnErrorCodes.contains(r2dbcException.getErrorCode());
+      }
+    }
+    return false;
+  }
+
+  private static boolean matches(List<Class<? extends Throwable>> types, Throwable error) {
+    for (Class<? extends Throwable> type : types) {
+      if (type.isInstance(error)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "RetryPolicy[maxAttempts=" + maxAttempts + ", minBackoff=" + minBackoff + ", maxBackoff=" + maxBackoff
+        + ", jitter=" + jitter + ", retryOn=" + retryOn + ", abortOn=" + abortOn + ", retryOnSqlStates=" + retryOnSqlStates
+        + ", retryOnErrorCodes=" + retryOnErrorCodes + "]";
+  }
+
+  public static class Builder {
+
+    private int maxAttempts = 3;
+    private Duration minBackoff = Duration.ofMillis(100);
+    private Duration maxBackoff = Duration.ofSeconds(2);
+    private double jitter = 0.5;
+    private final List<Class<? extends Throwable>> retryOn = new ArrayList<>(Collections.singletonList(R2dbcTransientException.class));
+    private final List<Class<? extends Throwable>> abortOn = new ArrayList<>(Collections.singletonList(R2dbcTimeoutException.class));
+    private final Set<String> retryOnSqlStates = new HashSet<>();
+    private final Set<Integer> retryOnErrorCodes = new HashSet<>();
+
+    /**
+     * @param maxAttempts
+     *          attempts in total including the first one, one disables retries
+     */
+    public Builder maxAttempts(int maxAttempts) {
+      if (maxAttempts < 1) {
+        throw new IllegalArgumentException("maxAttempts must be at least 1");
+      }
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    public Builder minBackoff(Duration minBackoff) {
+      this.minBackoff = minBackoff;
+      return this;
+    }
+
+    public Builder maxBackoff(Duration maxBackoff) {
+      this.maxBackoff = maxBackoff;
+      return this;
+    }
+
+    /**
+     * @param jitter
+     *          share of each backoff that is randomized, between 0 and 1
+     */
+    public Builder jitter(double jitter) {
+      if (jitter < 0 || jitter > 1) {
+        throw new IllegalArgumentException("jitter must be between 0 and 1");
+      }
+      this.jitter = jitter;
+      return this;
+    }
+
+    /**
+     * Replaces the errors that qualify for a retry.
+     */
+    @SafeVarargs
+    public final Builder retryOn(Class<? extends Throwable>... types) {
+      this.retryOn.clear();
+      this.retryOn.addAll(Arrays.asList(types));
+      return this;
+    }
+
+    /**
+     * Replaces the errors that never qualify for a retry, even if they match {@link #retryOn(Class[])}.
+     */
+    @SafeVarargs
+    public final Builder abortOn(Class<? extends Throwable>... types) {
+      this.abortOn.clear();
+      this.abortOn.addAll(Arrays.asList(types));
+      return this;
+    }
+
+    /**
+     * Adds the SQLSTATEs of {@link R2dbcException}s that qualify for a retry whatever their type.
+     */
+    public Builder retryOnSqlStates(String... sqlStates) {
+      this.retryOnSqlStates.addAll(Arrays.asList(sqlStates));
+      return this;
+    }
+
+    /**
+     * Adds the vendor error codes of {@link R2dbcException}s that qualify for a retry whatever their type.
+     */
+    public Builder retryOnErrorCodes(Integer... errorCodes) {
+      this.retryOnErrorCodes.addAll(Arrays.asList(errorCodes));
+      return this;
+    }
+
+    public RetryPolicy build() {
+      if (minBackoff.compareTo(maxBackoff) > 0) {
+        throw new IllegalArgumentException("minBackoff must not exceed maxBackoff");
+      }
+      return new RetryPolicy(this);
+    }
+
+  }
+
+}
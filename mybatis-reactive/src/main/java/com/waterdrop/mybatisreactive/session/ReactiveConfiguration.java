@@ -1,6 +1,13 @@
 package com.waterdrop.mybatisreactive.session;
 
 import com.waterdrop.mybatisreactive.binding.ReactiveMapperRegistry;
+import com.waterdrop.mybatisreactive.cache.ReactiveCache;
+import com.waterdrop.mybatisreactive.cache.ReactiveCacheAdapter;
+import com.waterdrop.mybatisreactive.cache.impl.TinyLfuCache;
+import com.waterdrop.mybatisreactive.executor.HedgeBudget;
+import com.waterdrop.mybatisreactive.executor.PipeliningReactiveExecutor;
+import com.waterdrop.mybatisreactive.executor.QueryCoalescer;
+import com.waterdrop.mybatisreactive.executor.ReactiveCachingExecutor;
 import com.waterdrop.mybatisreactive.executor.ReactiveExecutor;
 import com.waterdrop.mybatisreactive.executor.SimpleReactiveExecutor;
 import com.waterdrop.mybatisreactive.executor.parameter.ReactiveParameterHandler;
@@ -9,11 +16,17 @@ import com.waterdrop.mybatisreactive.executor.resultset.ReactiveResultSetHandler
 import com.waterdrop.mybatisreactive.executor.statement.ReactiveStatementHandler;
 import com.waterdrop.mybatisreactive.executor.statement.RoutingStatementHandler;
 import com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment;
+import com.waterdrop.mybatisreactive.mapping.ShardingStrategy;
+import com.waterdrop.mybatisreactive.mapping.StatementOptions;
+import com.waterdrop.mybatisreactive.metrics.StatementMetrics;
+import com.waterdrop.mybatisreactive.retry.RetryPolicy;
 import com.waterdrop.mybatisreactive.scripting.defaults.DefaultReactiveParameterHandler;
 import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
 import com.waterdrop.mybatisreactive.transaction.r2dbc.R2dbcTransactionFactory;
 import io.r2dbc.pool.ConnectionPool;
 import org.apache.ibatis.binding.MapperRegistry;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.Configuration;
@@ -21,11 +34,49 @@ import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class ReactiveConfiguration extends Configuration {
     protected ReactiveEnvironment reactiveEnvironment;
 
     protected final ReactiveMapperRegistry mapperRegistry = new ReactiveMapperRegistry(this);
 
+    protected final Map<String, ReactiveCache> reactiveCaches = new ConcurrentHashMap<>();
+
+    protected final Map<String, StatementOptions> statementOptions = new ConcurrentHashMap<>();
+    protected final Map<String, ShardingStrategy> shardingStrategies = new ConcurrentHashMap<>();
+
+    protected final QueryCoalescer queryCoalescer = new QueryCoalescer();
+    protected final StatementMetrics statementMetrics = new StatementMetrics();
+
+    /**
+     * Maximum number of entries of the session level cache, {@code null} for unbounded.
+     */
+    protected Integer localCacheSize;
+
+    /**
+     * Whether SIMPLE executors send updates without waiting for earlier results, see {@link PipeliningReactiveExecutor}.
+     */
+    protected boolean pipeliningEnabled;
+
+    /**
+     * Whether autocommit sessions give their connection back as soon as no statement is running.
+     */
+    protected boolean releaseAfterStatement;
+
+    /**
+     * Retry policy of selects without one of their own, none by default.
+     */
+    protected RetryPolicy defaultRetryPolicy;
+
+    /**
+     * Caps hedged selects to 5% of the requests of hedged statements.
+     */
+    protected HedgeBudget hedgeBudget = new HedgeBudget(0.05, 10);
+
     public ReactiveConfiguration(ReactiveEnvironment reactiveEnvironment) {
         this();
         this.reactiveEnvironment = reactiveEnvironment;
@@ -37,6 +88,7 @@ public class ReactiveConfiguration extends Configuration {
         this.mapUnderscoreToCamelCase = true;
         typeAliasRegistry.registerAlias("R2DBC", R2dbcTransactionFactory.class);
         typeAliasRegistry.registerAlias("R2DBC_POOLED", ConnectionPool.class);
+        typeAliasRegistry.registerAlias("TINYLFU", TinyLfuCache.class);
     }
 
     public ReactiveEnvironment getReactiveEnvironment() {
@@ -47,6 +99,116 @@ public class ReactiveConfiguration extends Configuration {
         this.reactiveEnvironment = reactiveEnvironment;
     }
 
+    public Integer getLocalCacheSize() {
+        return localCacheSize;
+    }
+
+    public void setLocalCacheSize(Integer localCacheSize) {
+        this.localCacheSize = localCacheSize;
+    }
+
+    public HedgeBudget getHedgeBudget() {
+        return hedgeBudget;
+    }
+
+    public void setHedgeBudget(HedgeBudget hedgeBudget) {
+        this.hedgeBudget = hedgeBudget;
+    }
+
+    public RetryPolicy getDefaultRetryPolicy() {
+        return defaultRetryPolicy;
+    }
+
+    public void setDefaultRetryPolicy(RetryPolicy defaultRetryPolicy) {
+        this.defaultRetryPolicy = defaultRetryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy(String statementId) {
+        StatementOptions options = statementOptions.get(statementId);
+        RetryPolicy retryPolicy = options != null ? options.getRetryPolicy() : null;
+        return retryPolicy != null ? retryPolicy : defaultRetryPolicy;
+    }
+
+    public boolean isPipeliningEnabled() {
+        return pipeliningEnabled;
+    }
+
+    public void setPipeliningEnabled(boolean pipeliningEnabled) {
+        this.pipeliningEnabled = pipeliningEnabled;
+    }
+
+    public boolean isReleaseAfterStatement() {
+        return releaseAfterStatement;
+    }
+
+    public void setReleaseAfterStatement(boolean releaseAfterStatement) {
+        this.releaseAfterStatement = releaseAfterStatement;
+    }
+
+    /**
+     * Registers a cache that replaces the {@code <cache/>} of the mapper namespace with the same id.
+     */
+    public void addReactiveCache(ReactiveCache cache) {
+        reactiveCaches.put(cache.getId(), cache);
+    }
+
+    /**
+     * Returns the reactive view of the second level cache of a statement.
+     */
+    public ReactiveCache getReactiveCache(Cache cache) {
+        return reactiveCaches.computeIfAbsent(cache.getId(), id -> new ReactiveCacheAdapter(cache));
+    }
+
+    public Collection<ReactiveCache> getReactiveCaches() {
+        return Collections.unmodifiableCollection(reactiveCaches.values());
+    }
+
+    /**
+     * Returns the reactive options of a statement, creating default ones on first access.
+     */
+    public StatementOptions getStatementOptions(String statementId) {
+        StatementOptions options = statementOptions.get(statementId);
+        return options != null ? options : statementOptions.computeIfAbsent(statementId, id -> new StatementOptions());
+    }
+
+    /**
+     * Declares how the statement, or every statement of the mapper namespace, with the given id chooses its shard.
+     */
+    public void setShardingStrategy(String statementIdOrNamespace, ShardingStrategy shardingStrategy) {
+        shardingStrategies.put(statementIdOrNamespace, shardingStrategy);
+    }
+
+    /**
+     * Returns the sharding strategy of a statement or else of its namespace, {@code null} when it runs on the
+     * primary connection factory of the environment.
+     */
+    public ShardingStrategy getShardingStrategy(String statementId) {
+        ShardingStrategy strategy = shardingStrategies.get(statementId);
+        int namespaceEnd = statementId.lastIndexOf('.');
+        if (strategy == null && namespaceEnd > 0) {
+            strategy = shardingStrategies.get(statementId.substring(0, namespaceEnd));
+        }
+        return strategy;
+    }
+
+    public QueryCoalescer getQueryCoalescer() {
+        return queryCoalescer;
+    }
+
+    public StatementMetrics getStatementMetrics() {
+        return statementMetrics;
+    }
+
+    public Cache newLocalCache(String id) {
+        if (localCacheSize == null || localCacheSize <= 0) {
+            return new PerpetualCache(id);
+        }
+        TinyLfuCache cache = new TinyLfuCache(id);
+        cache.setMaximumWeight(localCacheSize);
+        cache.setWeigher((key, value) -> 1);
+        return cache;
+    }
+
     public ReactiveExecutor newReactiveExecutor(ReactiveTransaction transaction, ExecutorType executorType) {
         executorType = executorType == null ? defaultExecutorType : executorType;
         executorType = executorType == null ? ExecutorType.SIMPLE : executorType;
@@ -57,11 +219,13 @@ public class ReactiveConfiguration extends Configuration {
         } else if (ExecutorType.REUSE == executorType) {
 //            executor = new ReuseExecutor(this, transaction);
             throw new RuntimeException("todo");
+        } else if (pipeliningEnabled) {
+            executor = new PipeliningReactiveExecutor(this, transaction);
         } else {
             executor = new SimpleReactiveExecutor(this, transaction);
         }
         if (cacheEnabled) {
-//            executor = new CachingExecutor(executor);
+            executor = new ReactiveCachingExecutor(executor);
         }
         executor = (ReactiveExecutor) interceptorChain.pluginAll(executor);
         return executor;
@@ -0,0 +1,72 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.session;
+
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import reactor.core.publisher.Mono;
+
+/**
+ * Receives the rows of a select one at a time. The next row is only delivered once the {@code Mono} returned for the
+ * previous one completes, so a slow handler slows down the read instead of rows piling up in memory. An error
+ * returned by the handler cancels the select.
+ *
+ * @param <T> the row type
+ * @see ReactiveSqlSession#select(String, Object, ReactiveResultHandler)
+ */
+@FunctionalInterface
+public interface ReactiveResultHandler<T> {
+
+  Mono<Void> handleResult(T row);
+
+  /**
+   * Whether the handler wants no more rows; the select is then cancelled.
+   *
+   * @return true to stop the select
+   */
+  default boolean isStopped() {
+    return false;
+  }
+
+  /**
+   * Adapts a blocking MyBatis {@link ResultHandler}, the select stops once it calls
+   * {@link org.apache.ibatis.session.ResultContext#stop()}.
+   *
+   * @param resultHandler
+   *          the handler to call for each row
+   * @return the reactive handler
+   */
+  static <T> ReactiveResultHandler<T> of(ResultHandler<? super T> resultHandler) {
+    DefaultResultContext<T> resultContext = new DefaultResultContext<>();
+    return new ReactiveResultHandler<T>() {
+      @Override
+      public Mono<Void> handleResult(T row) {
+        return Mono.fromRunnable(() -> {
+          if (!resultContext.isStopped()) {
+            resultContext.nextResultObject(row);
+            resultHandler.handleResult(resultContext);
+          }
+        });
+      }
+
+      @Override
+      public boolean isStopped() {
+        return resultContext.isStopped();
+      }
+    };
+  }
+
+}
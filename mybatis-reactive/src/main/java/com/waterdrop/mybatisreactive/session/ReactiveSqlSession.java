@@ -66,6 +66,113 @@ public interface ReactiveSqlSession {
      */
     <E> Flux<E> selectList(String statement, Object parameter, RowBounds rowBounds);
 
+    /**
+     * The selectMap is a special case in that it is designed to convert a list
+     * of results into a Map based on one of the properties in the resulting
+     * objects.
+     * Eg. Return a of Map[Integer,Author] for selectMap("selectAuthors","id")
+     * <p>
+     * The map is filled while rows are read, without an intermediate list, and is sized up front from
+     * {@link com.waterdrop.mybatisreactive.mapping.StatementOptions#getResultSizeHint()} or else from the size of the
+     * previous result of the statement.
+     * @param <K> the returned Map keys type
+     * @param <V> the returned Map values type
+     * @param statement Unique identifier matching the statement to use.
+     * @param mapKey The property to use as key for each value in the list.
+     * @return Map containing key pair data.
+     */
+    <K, V> Mono<Map<K, V>> selectMap(String statement, String mapKey);
+
+    /**
+     * The selectMap is a special case in that it is designed to convert a list
+     * of results into a Map based on one of the properties in the resulting
+     * objects.
+     * @param <K> the returned Map keys type
+     * @param <V> the returned Map values type
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param mapKey The property to use as key for each value in the list.
+     * @return Map containing key pair data.
+     */
+    <K, V> Mono<Map<K, V>> selectMap(String statement, Object parameter, String mapKey);
+
+    /**
+     * The selectMap is a special case in that it is designed to convert a list
+     * of results into a Map based on one of the properties in the resulting
+     * objects.
+     * @param <K> the returned Map keys type
+     * @param <V> the returned Map values type
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param mapKey The property to use as key for each value in the list.
+     * @param rowBounds  Bounds to limit object retrieval
+     * @return Map containing key pair data.
+     */
+    <K, V> Mono<Map<K, V>> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds);
+
+    /**
+     * Stream mapped objects from the statement key, see {@link #selectCursor(String, Object)}.
+     * @param <T> the returned cursor element type.
+     * @param statement Unique identifier matching the statement to use.
+     * @return Stream of mapped objects
+     */
+    <T> Flux<T> selectCursor(String statement);
+
+    /**
+     * Stream mapped objects from the statement key and parameter, reading them as the subscriber requests them.
+     * <p>
+     * Rows are fetched in batches of the statement's fetch size, or {@code defaultFetchSize}, or 256 when neither is
+     * set, and the publisher requests the next batch only after downstream demanded the previous one, so no more than
+     * about one batch is held in memory. Unlike {@link #selectList(String, Object)} results are never kept in the
+     * local cache. Cancelling the subscription cancels the query and closes the server side cursor.
+     * @param <T> the returned cursor element type.
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @return Stream of mapped objects
+     */
+    <T> Flux<T> selectCursor(String statement, Object parameter);
+
+    /**
+     * Stream mapped objects from the statement key and parameter, within the specified row bounds,
+     * see {@link #selectCursor(String, Object)}.
+     * @param <T> the returned cursor element type.
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param rowBounds  Bounds to limit object retrieval
+     * @return Stream of mapped objects
+     */
+    <T> Flux<T> selectCursor(String statement, Object parameter, RowBounds rowBounds);
+
+    /**
+     * Retrieve a single row mapped from the statement key and parameter using a {@code ReactiveResultHandler}.
+     * Rows are streamed as by {@link #selectCursor(String, Object)} and handed to the handler one at a time, the next
+     * one only after the handler completed the previous one.
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param handler ReactiveResultHandler that will handle each retrieved row
+     * @return completes once every row was handled
+     */
+    <T> Mono<Void> select(String statement, Object parameter, ReactiveResultHandler<? super T> handler);
+
+    /**
+     * Retrieve a single row mapped from the statement using a {@code ReactiveResultHandler}.
+     * @param statement Unique identifier matching the statement to use.
+     * @param handler ReactiveResultHandler that will handle each retrieved row
+     * @return completes once every row was handled
+     */
+    <T> Mono<Void> select(String statement, ReactiveResultHandler<? super T> handler);
+
+    /**
+     * Retrieve a single row mapped from the statement key and parameter using a {@code ReactiveResultHandler} and
+     * {@code RowBounds}.
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param rowBounds RowBound instance to limit the query results
+     * @param handler ReactiveResultHandler that will handle each retrieved row
+     * @return completes once every row was handled
+     */
+    <T> Mono<Void> select(String statement, Object parameter, RowBounds rowBounds, ReactiveResultHandler<? super T> handler);
+
     /**
      * Execute an insert statement.
      * @param statement Unique identifier matching the statement to execute.
@@ -122,6 +229,24 @@ public interface ReactiveSqlSession {
 
     Mono<Void> rollback(boolean force);
 
+    /**
+     * Marks the current point of the transaction of the session, see {@link #rollbackToSavepoint(String)}.
+     * @param name name of the savepoint, unique within the transaction
+     */
+    Mono<Void> createSavepoint(String name);
+
+    /**
+     * Undoes the work done since the savepoint, the transaction stays active.
+     * @param name name of the savepoint
+     */
+    Mono<Void> rollbackToSavepoint(String name);
+
+    /**
+     * Drops the savepoint and keeps the work done since it.
+     * @param name name of the savepoint
+     */
+    Mono<Void> releaseSavepoint(String name);
+
     /**
      * Closes the session.
      */
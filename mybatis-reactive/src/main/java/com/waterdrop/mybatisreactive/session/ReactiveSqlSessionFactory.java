@@ -15,12 +15,12 @@
  */
 package com.waterdrop.mybatisreactive.session;
 
+import io.r2dbc.spi.Connection;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.TransactionIsolationLevel;
 
-import java.sql.Connection;
 
 /**
  * Creates an {@link SqlSession} out of a connection or a DataSource
@@ -16,7 +16,10 @@
 package com.waterdrop.mybatisreactive.session.defaults;
 
 import com.waterdrop.mybatisreactive.executor.ReactiveExecutor;
+import com.waterdrop.mybatisreactive.metrics.CancellationScope;
+import com.waterdrop.mybatisreactive.metrics.StatementStats;
 import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.session.ReactiveResultHandler;
 import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
 import io.r2dbc.spi.Connection;
 import org.apache.ibatis.binding.BindingException;
@@ -26,6 +29,7 @@ import org.apache.ibatis.exceptions.TooManyResultsException;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.ParamNameResolver;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
@@ -39,6 +43,8 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * The default implementation for {@link SqlSession}.
@@ -74,12 +80,13 @@ public class DefaultReactiveSqlSession implements ReactiveSqlSession {
   @Override
   public <T> Mono<T> selectOne(String statement, Object parameter) {
     // Popular vote was to return null on 0 results and throw exception on too many.
+    // A second row is enough to fail, the rest of the result is cancelled instead of read.
     Flux<T> result = this.selectList(statement, parameter);
-    return result.collectList().flatMap(list -> {
+    return CancellationScope.of(result.take(2, true).collectList()).flatMap(list -> {
       if (list.size() == 1) {
         return Mono.just(list.get(0));
       } else if (list.size() > 1) {
-        return Mono.error(new TooManyResultsException("Expected one result (or null) to be returned by selectOne(), but found: " + list.size()));
+        return Mono.error(new TooManyResultsException("Expected one result (or null) to be returned by selectOne(), but found more than one"));
       } else {
         return Mono.empty();
       }
@@ -113,6 +120,79 @@ public class DefaultReactiveSqlSession implements ReactiveSqlSession {
     }
   }
 
+  @Override
+  public <K, V> Mono<Map<K, V>> selectMap(String statement, String mapKey) {
+    return this.selectMap(statement, null, mapKey, RowBounds.DEFAULT);
+  }
+
+  @Override
+  public <K, V> Mono<Map<K, V>> selectMap(String statement, Object parameter, String mapKey) {
+    return this.selectMap(statement, parameter, mapKey, RowBounds.DEFAULT);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <K, V> Mono<Map<K, V>> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
+    try {
+      MappedStatement ms = configuration.getMappedStatement(statement);
+      Flux<V> rows = executor.query(ms, wrapCollection(parameter), rowBounds, Executor.NO_RESULT_HANDLER);
+      StatementStats stats = configuration.getStatementMetrics().getStats(ms.getId());
+      int hint = configuration.getStatementOptions(ms.getId()).getResultSizeHint();
+      int expectedSize = hint > 0 ? hint : stats.getLastResultSize();
+      // sized for the expected rows up front, so filling the map does not rehash
+      Supplier<Map<K, V>> mapFactory = () -> new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+      return rows.collect(mapFactory, (map, row) -> {
+        MetaObject metaObject = configuration.newMetaObject(row);
+        map.put((K) metaObject.getValue(mapKey), row);
+      }).doOnNext(map -> stats.recordResultSize(map.size()));
+    } catch (Exception e) {
+      throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+    } finally {
+      ErrorContext.instance().reset();
+    }
+  }
+
+  @Override
+  public <T> Flux<T> selectCursor(String statement) {
+    return selectCursor(statement, null);
+  }
+
+  @Override
+  public <T> Flux<T> selectCursor(String statement, Object parameter) {
+    return selectCursor(statement, parameter, RowBounds.DEFAULT);
+  }
+
+  @Override
+  public <T> Flux<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+    try {
+      MappedStatement ms = configuration.getMappedStatement(statement);
+      return executor.queryCursor(ms, wrapCollection(parameter), rowBounds);
+    } catch (Exception e) {
+      throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+    } finally {
+      ErrorContext.instance().reset();
+    }
+  }
+
+  @Override
+  public <T> Mono<Void> select(String statement, Object parameter, ReactiveResultHandler<? super T> handler) {
+    return select(statement, parameter, RowBounds.DEFAULT, handler);
+  }
+
+  @Override
+  public <T> Mono<Void> select(String statement, ReactiveResultHandler<? super T> handler) {
+    return select(statement, null, RowBounds.DEFAULT, handler);
+  }
+
+  @Override
+  public <T> Mono<Void> select(String statement, Object parameter, RowBounds rowBounds, ReactiveResultHandler<? super T> handler) {
+    Flux<T> rows = selectCursor(statement, parameter, rowBounds);
+    // one row in flight: the next is delivered when the handler is done with the previous one
+    return rows.takeWhile(row -> !handler.isStopped())
+        .concatMap(handler::handleResult, 1)
+        .then();
+  }
+
   @Override
   public Mono<Integer> insert(String statement) {
     return insert(statement, null);
@@ -153,22 +233,55 @@ public class DefaultReactiveSqlSession implements ReactiveSqlSession {
 
   @Override
   public Mono<Void> commit() {
-    return Mono.empty();
+    return commit(false);
   }
 
   @Override
   public Mono<Void> commit(boolean force) {
-    return Mono.empty();
+    return Mono.defer(() -> {
+      try {
+        return executor.commit(isCommitOrRollbackRequired(force));
+      } catch (Exception e) {
+        throw ExceptionFactory.wrapException("Error committing transaction.  Cause: " + e, e);
+      } finally {
+        ErrorContext.instance().reset();
+      }
+    }).doOnSuccess(v -> dirty = false);
   }
 
   @Override
   public Mono<Void> rollback() {
-    return null;
+    return rollback(false);
   }
 
   @Override
   public Mono<Void> rollback(boolean force) {
-    return null;
+    return Mono.defer(() -> {
+      try {
+        return executor.rollback(isCommitOrRollbackRequired(force));
+      } catch (Exception e) {
+        throw ExceptionFactory.wrapException("Error rolling back transaction.  Cause: " + e, e);
+      } finally {
+        ErrorContext.instance().reset();
+      }
+    }).doOnSuccess(v -> dirty = false);
+  }
+
+  @Override
+  public Mono<Void> createSavepoint(String name) {
+    return Mono.defer(() -> executor.getTransaction().createSavepoint(name));
+  }
+
+  @Override
+  public Mono<Void> rollbackToSavepoint(String name) {
+    // rows cached since the savepoint may have been undone
+    return Mono.defer(() -> executor.getTransaction().rollbackToSavepoint(name))
+        .doOnSuccess(v -> executor.clearCacheAfterSavepointRollback());
+  }
+
+  @Override
+  public Mono<Void> releaseSavepoint(String name) {
+    return Mono.defer(() -> executor.getTransaction().releaseSavepoint(name));
   }
 
   @Override
@@ -23,13 +23,13 @@ import com.waterdrop.mybatisreactive.session.ReactiveSqlSessionFactory;
 import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
 import com.waterdrop.mybatisreactive.transaction.ReactiveTransactionFactory;
 import com.waterdrop.mybatisreactive.transaction.r2dbc.R2dbcTransactionFactory;
+import io.r2dbc.spi.Connection;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.session.*;
 import org.apache.ibatis.transaction.Transaction;
 
-import java.sql.Connection;
 import java.sql.SQLException;
 
 /**
@@ -93,8 +93,7 @@ public class DefaultReactiveSqlSessionFactory implements ReactiveSqlSessionFacto
     try {
       Environment environment1 = configuration.getEnvironment();
       final ReactiveEnvironment environment = configuration.getReactiveEnvironment();
-      final ReactiveTransactionFactory transactionFactory = getTransactionFactoryFromEnvironment(environment);
-      tx = transactionFactory.newTransaction(environment.getConnectionFactory(), level, autoCommit);
+      tx = environment.newTransaction(level, autoCommit);
       final ReactiveExecutor executor = configuration.newReactiveExecutor(tx, execType);
       return new DefaultReactiveSqlSession(configuration, executor, autoCommit);
     } catch (Exception e) {
@@ -107,18 +106,11 @@ public class DefaultReactiveSqlSessionFactory implements ReactiveSqlSessionFacto
 
   private ReactiveSqlSession openSessionFromConnection(ExecutorType execType, Connection connection) {
     try {
-      boolean autoCommit;
-      try {
-        autoCommit = connection.getAutoCommit();
-      } catch (SQLException e) {
-        // Failover to true, as most poor drivers
-        // or databases won't support transactions
-        autoCommit = true;
-      }
-//      final Environment environment = configuration.getEnvironment();
-//      final TransactionFactory transactionFactory = getTransactionFactoryFromEnvironment(environment);
-//      final Transaction tx = transactionFactory.newTransaction(connection);
-      final ReactiveExecutor executor = configuration.newReactiveExecutor(null, execType);
+      boolean autoCommit = connection.isAutoCommit();
+      final ReactiveEnvironment environment = configuration.getReactiveEnvironment();
+      final ReactiveTransactionFactory transactionFactory = getTransactionFactoryFromEnvironment(environment);
+      final ReactiveTransaction tx = transactionFactory.newTransaction(connection);
+      final ReactiveExecutor executor = configuration.newReactiveExecutor(tx, execType);
       return new DefaultReactiveSqlSession(configuration, executor, autoCommit);
     } catch (Exception e) {
       throw ExceptionFactory.wrapException("Error opening session.  Cause: " + e, e);
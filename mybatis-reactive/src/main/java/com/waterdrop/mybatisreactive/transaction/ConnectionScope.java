@@ -0,0 +1,78 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.transaction;
+
+import com.waterdrop.mybatisreactive.session.ReactiveSqlSessionFactory;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.util.function.Function;
+
+/**
+ * Binds one connection into the Reactor {@link reactor.util.context.Context} of a chain, so every autocommit session
+ * opened for the same {@link ConnectionFactory} inside it borrows that connection instead of acquiring its own.
+ * Statements run with the autocommit and isolation level of the connection, no transaction is started; sessions
+ * that are not autocommit acquire a connection of their own.
+ * <pre>
+ * ConnectionScope.withConnection(sqlSessionFactory, connection -&gt;
+ *     userMapper.selectById(id).flatMap(user -&gt; orderMapper.selectByUser(user.getId()).collectList()));
+ * </pre>
+ * Nested scopes for the same factory keep the outer connection.
+ */
+public final class ConnectionScope {
+
+  private final ConnectionFactory connectionFactory;
+  private final Connection connection;
+
+  private ConnectionScope(ConnectionFactory connectionFactory, Connection connection) {
+    this.connectionFactory = connectionFactory;
+    this.connection = connection;
+  }
+
+  public static <T> Flux<T> withConnection(ReactiveSqlSessionFactory sqlSessionFactory, Function<Connection, ? extends Publisher<T>> body) {
+    return withConnection(sqlSessionFactory.getConfiguration().getReactiveEnvironment().getConnectionFactory(), body);
+  }
+
+  public static <T> Flux<T> withConnection(ConnectionFactory connectionFactory, Function<Connection, ? extends Publisher<T>> body) {
+    return Flux.deferContextual(context -> {
+      Connection bound = find(context, connectionFactory);
+      if (bound != null) {
+        return body.apply(bound);
+      }
+      return Flux.usingWhen(connectionFactory.create(),
+          connection -> Flux.from(body.apply(connection))
+              .contextWrite(ctx -> ctx.put(ConnectionScope.class, new ConnectionScope(connectionFactory, connection))),
+          Connection::close);
+    });
+  }
+
+  /**
+   * Returns the connection bound for the factory by an enclosing {@link #withConnection}, empty if there is none.
+   */
+  public static Mono<Connection> currentConnection(ConnectionFactory connectionFactory) {
+    return Mono.deferContextual(context -> Mono.justOrEmpty(find(context, connectionFactory)));
+  }
+
+  private static Connection find(ContextView context, ConnectionFactory connectionFactory) {
+    ConnectionScope scope = context.getOrDefault(ConnectionScope.class, null);
+    return scope != null && scope.connectionFactory == connectionFactory ? scope.connection : null;
+  }
+
+}
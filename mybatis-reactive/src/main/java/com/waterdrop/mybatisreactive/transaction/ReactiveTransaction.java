@@ -15,7 +15,9 @@
  */
 package com.waterdrop.mybatisreactive.transaction;
 
+import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
 import io.r2dbc.spi.Connection;
+import org.apache.ibatis.mapping.MappedStatement;
 import reactor.core.publisher.Mono;
 
 import java.sql.SQLException;
@@ -36,6 +38,18 @@ public interface ReactiveTransaction {
    */
   Mono<Connection> getConnection();
 
+  /**
+   * Retrieve the connection a statement runs on. A transaction routing statements to several databases chooses it by
+   * the statement and its parameter, the others return {@link #getConnection()}.
+   *
+   * @param ms the statement to run
+   * @param parameter the parameter of the statement
+   * @return DataBase connection
+   */
+  default Mono<Connection> getConnection(MappedStatement ms, Object parameter) {
+    return getConnection();
+  }
+
   /**
    * Commit inner database connection.
    * @throws SQLException
@@ -67,4 +81,55 @@ public interface ReactiveTransaction {
    */
   Mono<Integer> getTimeout();
 
+  /**
+   * Whether statements run outside of a transaction, each of them committed on its own.
+   * <p>
+   * Work the executor moves to a connection of its own, like a hedge, a partitioned scan or a coalesced query, is only
+   * done while this is true: rows read on another connection would not see the work of the transaction, nor would the
+   * transaction see theirs.
+   *
+   * @return true when no transaction spans the statements
+   */
+  default Mono<Boolean> isAutoCommit() {
+    return Mono.just(false);
+  }
+
+  /**
+   * Gives the current connection back, the next {@link #getConnection()} opens another one.
+   * Only called outside of a transaction, e.g. before retrying a statement that failed on a broken connection.
+   */
+  default Mono<Void> releaseConnection() {
+    return Mono.empty();
+  }
+
+  /**
+   * Marks the current point of the transaction, so the work done after it can be undone on its own with
+   * {@link #rollbackToSavepoint(String)}.
+   *
+   * @param name name of the savepoint, unique within the transaction
+   */
+  default Mono<Void> createSavepoint(String name) {
+    return inTransaction("create savepoint " + name).flatMap(c -> Mono.from(c.createSavepoint(name)));
+  }
+
+  default Mono<Void> rollbackToSavepoint(String name) {
+    return inTransaction("roll back to savepoint " + name).flatMap(c -> Mono.from(c.rollbackTransactionToSavepoint(name)));
+  }
+
+  /**
+   * Drops the savepoint and keeps the work done after it.
+   */
+  default Mono<Void> releaseSavepoint(String name) {
+    return inTransaction("release savepoint " + name).flatMap(c -> Mono.from(c.releaseSavepoint(name)));
+  }
+
+  /**
+   * Returns the connection of the active transaction, an error when statements commit automatically.
+   */
+  default Mono<Connection> inTransaction(String operation) {
+    return isAutoCommit().flatMap(autoCommit -> autoCommit
+        ? Mono.error(new ReactiveMybatisException("Cannot " + operation + ", no transaction is active"))
+        : getConnection());
+  }
+
 }
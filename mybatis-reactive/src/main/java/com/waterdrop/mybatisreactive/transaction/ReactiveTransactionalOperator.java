@@ -0,0 +1,245 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.transaction;
+
+import com.waterdrop.mybatisreactive.metrics.FailedStatement;
+import com.waterdrop.mybatisreactive.retry.RetryPolicy;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
+import com.waterdrop.mybatisreactive.session.ReactiveSqlSessionFactory;
+import io.r2dbc.spi.Result;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Runs a reactive chain in one transaction without Spring. A session that does not commit automatically is opened
+ * on subscription and bound into the Reactor {@link reactor.util.context.Context}; mapper calls of the same
+ * configuration inside the chain run on it, whatever session their mapper was obtained from. The transaction is
+ * committed when the chain completes and rolled back when it fails or is cancelled.
+ * <pre>
+ * ReactiveTransactionalOperator operator = ReactiveTransactionalOperator.builder(sqlSessionFactory).build();
+ * operator.transactional(userMapper.insert(user).then(auditMapper.insert(entry)));
+ * </pre>
+ * A chain that runs inside another one of the same configuration joins its transaction.
+ */
+public class ReactiveTransactionalOperator {
+
+  private static final Log log = LogFactory.getLog(ReactiveTransactionalOperator.class);
+  private static final AtomicLong SAVEPOINT_COUNTER = new AtomicLong();
+
+  private final ReactiveSqlSessionFactory sqlSessionFactory;
+  private final ExecutorType executorType;
+  private final TransactionIsolationLevel isolationLevel;
+  private final boolean readOnly;
+  private final RetryPolicy retryPolicy;
+
+  private ReactiveTransactionalOperator(Builder builder) {
+    this.sqlSessionFactory = builder.sqlSessionFactory;
+    this.executorType = builder.executorType;
+    this.isolationLevel = builder.isolationLevel;
+    this.readOnly = builder.readOnly;
+    this.retryPolicy = builder.retryPolicy;
+  }
+
+  public static Builder builder(ReactiveSqlSessionFactory sqlSessionFactory) {
+    return new Builder(sqlSessionFactory);
+  }
+
+  public <T> Flux<T> transactional(Flux<T> flux) {
+    return execute(session -> flux);
+  }
+
+  public <T> Mono<T> transactional(Mono<T> mono) {
+    return execute(session -> mono).singleOrEmpty();
+  }
+
+  public <T> Flux<T> execute(Function<ReactiveSqlSession, ? extends Publisher<T>> action) {
+    ReactiveConfiguration configuration = sqlSessionFactory.getConfiguration();
+    return Flux.deferContextual(context -> {
+      ReactiveSqlSession current = currentSession(context, configuration);
+      if (current != null) {
+        return action.apply(current);
+      }
+      if (retryPolicy == null) {
+        return inTransaction(action, configuration);
+      }
+      // the whole unit is run again, so its results are passed on only once it committed
+      FailedStatement failedStatement = new FailedStatement();
+      Flux<List<T>> unit = inTransaction(action, configuration).collectList().flux()
+          .contextWrite(ctx -> ctx.put(FailedStatement.class, failedStatement));
+      return retryPolicy.apply(unit, () -> Mono.fromRunnable(() -> recordRetry(failedStatement, configuration)))
+          .flatMapIterable(Function.identity());
+    });
+  }
+
+  private <T> Flux<T> inTransaction(Function<ReactiveSqlSession, ? extends Publisher<T>> action, ReactiveConfiguration configuration) {
+    return Flux.usingWhen(begin(),
+        session -> Flux.from(action.apply(session))
+            .contextWrite(ctx -> ctx.put(ReactiveTransactionalOperator.class, new Binding(configuration, session))),
+        this::commit,
+        (session, e) -> rollback(session),
+        this::rollback);
+  }
+
+  private void recordRetry(FailedStatement failedStatement, ReactiveConfiguration configuration) {
+    String statementId = failedStatement.getAndClear();
+    if (statementId != null) {
+      configuration.getStatementMetrics().getStats(statementId).recordTransactionRetry();
+    }
+  }
+
+  /**
+   * Runs the action in a nested scope of the enclosing transaction: work done by a failed or cancelled action is rolled
+   * back to a savepoint and the error is passed on, so the caller can skip or retry just that unit. Without an
+   * enclosing transaction it behaves like {@link #execute(Function)}.
+   * <pre>
+   * operator.execute(session -&gt; Flux.fromIterable(records)
+   *     .concatMap(record -&gt; operator.nested(recordMapper.insert(record)).onErrorResume(e -&gt; Mono.empty())));
+   * </pre>
+   */
+  public <T> Flux<T> nested(Function<ReactiveSqlSession, ? extends Publisher<T>> action) {
+    ReactiveConfiguration configuration = sqlSessionFactory.getConfiguration();
+    return Flux.deferContextual(context -> {
+      ReactiveSqlSession current = currentSession(context, configuration);
+      if (current == null) {
+        return execute(action);
+      }
+      String savepoint = "MYBATIS_SAVEPOINT_" + SAVEPOINT_COUNTER.incrementAndGet();
+      return Flux.usingWhen(current.createSavepoint(savepoint).thenReturn(savepoint),
+          name -> action.apply(current),
+          current::releaseSavepoint,
+          (name, e) -> current.rollbackToSavepoint(name),
+          current::rollbackToSavepoint);
+    });
+  }
+
+  public <T> Mono<T> nested(Mono<T> mono) {
+    return nested(session -> mono).singleOrEmpty();
+  }
+
+  /**
+   * Returns the session bound for the configuration by an enclosing operator, {@code null} if there is none.
+   */
+  public static ReactiveSqlSession currentSession(ContextView context, Configuration configuration) {
+    Binding binding = context.getOrDefault(ReactiveTransactionalOperator.class, null);
+    return binding != null && binding.configuration == configuration ? binding.session : null;
+  }
+
+  private Mono<ReactiveSqlSession> begin() {
+    return Mono.fromSupplier(() -> isolationLevel != null
+            ? sqlSessionFactory.openSession(executorType, isolationLevel)
+            : sqlSessionFactory.openSession(executorType, false))
+        .flatMap(session -> {
+          if (!readOnly) {
+            return Mono.just(session);
+          }
+          // R2DBC 0.8 has no transaction definition, the read only mode is requested in SQL. Some databases apply
+          // SET TRANSACTION only inside a transaction, so it is begun first
+          return session.getConnection()
+              .flatMapMany(connection -> Mono.from(connection.beginTransaction())
+                  .thenMany(connection.createStatement("SET TRANSACTION READ ONLY").execute()))
+              .flatMap(Result::getRowsUpdated)
+              .then(Mono.just(session))
+              .onErrorResume(e -> session.close().then(Mono.error(e)));
+        });
+  }
+
+  private Mono<Void> commit(ReactiveSqlSession session) {
+    return session.commit(true)
+        .onErrorResume(e -> session.close().then(Mono.error(e)))
+        .then(Mono.defer(session::close));
+  }
+
+  private Mono<Void> rollback(ReactiveSqlSession session) {
+    return session.rollback(true)
+        .onErrorResume(e -> {
+          log.warn("Unexpected exception on rolling back transaction.  Cause: " + e);
+          return Mono.empty();
+        })
+        .then(Mono.defer(session::close));
+  }
+
+  private static class Binding {
+    private final Configuration configuration;
+    private final ReactiveSqlSession session;
+
+    Binding(Configuration configuration, ReactiveSqlSession session) {
+      this.configuration = configuration;
+      this.session = session;
+    }
+  }
+
+  public static class Builder {
+
+    private final ReactiveSqlSessionFactory sqlSessionFactory;
+    private ExecutorType executorType;
+    private TransactionIsolationLevel isolationLevel;
+    private boolean readOnly;
+    private RetryPolicy retryPolicy;
+
+    private Builder(ReactiveSqlSessionFactory sqlSessionFactory) {
+      this.sqlSessionFactory = sqlSessionFactory;
+      this.executorType = sqlSessionFactory.getConfiguration().getDefaultExecutorType();
+    }
+
+    public Builder executorType(ExecutorType executorType) {
+      this.executorType = executorType;
+      return this;
+    }
+
+    public Builder isolationLevel(TransactionIsolationLevel isolationLevel) {
+      this.isolationLevel = isolationLevel;
+      return this;
+    }
+
+    /**
+     * Begins the transaction on the connection of the session and marks it with {@code SET TRANSACTION READ ONLY}.
+     * That is the connection of the primary connection factory; statements a sharded or replicated environment runs
+     * on other connections are not read only.
+     */
+    public Builder readOnly(boolean readOnly) {
+      this.readOnly = readOnly;
+      return this;
+    }
+
+    /**
+     * Runs a transaction that failed with an error the policy accepts again from the start, such as a serialization
+     * failure or a deadlock (see {@link RetryPolicy#forTransactions()}). The results of each transaction are then
+     * collected and passed on after it committed.
+     */
+    public Builder retryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    public ReactiveTransactionalOperator build() {
+      return new ReactiveTransactionalOperator(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,159 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.transaction;
+
+import com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment;
+import com.waterdrop.mybatisreactive.mapping.ReplicaSelector;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Sends the reads of a session to a replica of its environment and everything else to the primary.
+ * <p>
+ * A select runs on a replica while the primary transaction commits automatically, or inside a transaction when the
+ * statement is marked {@link com.waterdrop.mybatisreactive.annotations.ReadOnly}. Once the session ran any other
+ * statement, all its statements stay on the primary so that it reads its own writes. The replica connection is a
+ * transaction of its own in autocommit mode, taken from the {@link ReplicaSelector} on first use and given back with
+ * {@link #releaseConnection()} or {@link #close()}.
+ */
+public class ReadWriteSplittingTransaction implements ReactiveTransaction {
+
+  private final ReactiveTransaction primary;
+  private final ReactiveEnvironment environment;
+  private final TransactionIsolationLevel level;
+  private volatile boolean wrote;
+  private ReactiveTransaction replica;
+  private ConnectionFactory replicaFactory;
+
+  public ReadWriteSplittingTransaction(ReactiveTransaction primary, ReactiveEnvironment environment, TransactionIsolationLevel level) {
+    this.primary = primary;
+    this.environment = environment;
+    this.level = level;
+  }
+
+  @Override
+  public Mono<Connection> getConnection() {
+    return primary.getConnection();
+  }
+
+  @Override
+  public Mono<Connection> getConnection(MappedStatement ms, Object parameter) {
+    return Mono.defer(() -> {
+      if (ms.getSqlCommandType() != SqlCommandType.SELECT) {
+        wrote = true;
+      }
+      return readsFromReplica(ms);
+    }).flatMap(onReplica -> onReplica ? replica().getConnection(ms, parameter) : primary.getConnection(ms, parameter));
+  }
+
+  /**
+   * Runs {@code work} on a connection of its own, closed once it terminates. The connection is taken from a replica
+   * chosen by the {@link ReplicaSelector} when the select would run on one, and from the primary otherwise.
+   */
+  public <T> Flux<T> usingReadConnection(MappedStatement ms, Function<Connection, ? extends Publisher<T>> work) {
+    return readsFromReplica(ms).flatMapMany(onReplica -> {
+      if (!onReplica) {
+        return Flux.usingWhen(environment.getConnectionFactory().create(), work, Connection::close);
+      }
+      ReplicaSelector selector = environment.getReplicaSelector();
+      return Flux.using(() -> selector.select(environment.getReplicas()),
+          replica -> Flux.usingWhen(replica.create(), work, Connection::close),
+          selector::release);
+    });
+  }
+
+  private Mono<Boolean> readsFromReplica(MappedStatement ms) {
+    if (ms.getSqlCommandType() != SqlCommandType.SELECT || wrote) {
+      return Mono.just(false);
+    }
+    if (isReadOnly(ms)) {
+      return Mono.just(true);
+    }
+    // a transaction manager may begin and end transactions on the primary during the session
+    return primary.isAutoCommit().defaultIfEmpty(false);
+  }
+
+  private boolean isReadOnly(MappedStatement ms) {
+    return ms.getConfiguration() instanceof ReactiveConfiguration
+        && ((ReactiveConfiguration) ms.getConfiguration()).getStatementOptions(ms.getId()).isReadOnly();
+  }
+
+  private synchronized ReactiveTransaction replica() {
+    if (replica == null) {
+      replicaFactory = environment.getReplicaSelector().select(environment.getReplicas());
+      replica = environment.getTransactionFactory().newTransaction(replicaFactory, level, true);
+    }
+    return replica;
+  }
+
+  @Override
+  public Mono<Void> commit() {
+    return primary.commit();
+  }
+
+  @Override
+  public Mono<Void> rollback() {
+    return primary.rollback();
+  }
+
+  @Override
+  public Mono<Void> close() {
+    return Flux.concatDelayError(Mono.defer(primary::close), Mono.defer(() -> endReplica(false))).then();
+  }
+
+  @Override
+  public Mono<Integer> getTimeout() {
+    return primary.getTimeout();
+  }
+
+  @Override
+  public Mono<Boolean> isAutoCommit() {
+    return primary.isAutoCommit();
+  }
+
+  @Override
+  public Mono<Void> releaseConnection() {
+    // the replica ends even when the primary fails to, or the selector would count it in flight for good
+    return Flux.concatDelayError(Mono.defer(primary::releaseConnection), Mono.defer(() -> endReplica(true))).then();
+  }
+
+  private Mono<Void> endReplica(boolean release) {
+    ReactiveTransaction ended;
+    ConnectionFactory endedFactory;
+    synchronized (this) {
+      ended = replica;
+      endedFactory = replicaFactory;
+      replica = null;
+      replicaFactory = null;
+    }
+    if (ended == null) {
+      return Mono.empty();
+    }
+    // the next read may go to another replica
+    return Mono.defer(() -> release ? ended.releaseConnection() : ended.close())
+        .doFinally(signal -> environment.getReplicaSelector().release(endedFactory));
+  }
+
+}
@@ -0,0 +1,162 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.transaction;
+
+import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
+import com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment;
+import com.waterdrop.mybatisreactive.mapping.ShardingStrategy;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Runs each statement of a session on the shard its {@link ShardingStrategy} chooses from the parameter, and
+ * statements without a strategy on the primary connection factory of the environment.
+ * <p>
+ * The transaction on a shard is opened when the first statement runs on it. While the primary transaction commits
+ * automatically the session may use several shards; otherwise it is bound to the first database it uses, as its
+ * transaction cannot span shards.
+ */
+public class ShardingTransaction implements ReactiveTransaction {
+
+  private final ReactiveTransaction primary;
+  private final ReactiveEnvironment environment;
+  private final TransactionIsolationLevel level;
+  private final Map<ConnectionFactory, ReactiveTransaction> transactions = new LinkedHashMap<>();
+
+  public ShardingTransaction(ReactiveTransaction primary, ReactiveEnvironment environment, TransactionIsolationLevel level) {
+    this.primary = primary;
+    this.environment = environment;
+    this.level = level;
+  }
+
+  @Override
+  public Mono<Connection> getConnection() {
+    return isAutoCommit().flatMap(autoCommit -> {
+      ReactiveTransaction current;
+      synchronized (this) {
+        // the primary joins the transactions to commit and close, as the caller runs statements on its connection
+        current = transactions.size() == 1
+            ? transactions.values().iterator().next()
+            : transactionOn(environment.getConnectionFactory(), autoCommit, null);
+      }
+      return current.getConnection();
+    });
+  }
+
+  @Override
+  public Mono<Connection> getConnection(MappedStatement ms, Object parameter) {
+    return isAutoCommit().flatMap(autoCommit -> transactionOn(shardOf(ms, parameter), autoCommit, ms).getConnection(ms, parameter));
+  }
+
+  public int getShardCount() {
+    return environment.getShards().size();
+  }
+
+  /**
+   * Retrieve the connection of a shard for a statement that runs on every shard, see
+   * {@link com.waterdrop.mybatisreactive.mapping.ScatterGatherPolicy}.
+   */
+  public Mono<Connection> getShardConnection(MappedStatement ms, int shard) {
+    return isAutoCommit().flatMap(autoCommit -> transactionOn(environment.getShards().get(shard), autoCommit, ms).getConnection());
+  }
+
+  private ConnectionFactory shardOf(MappedStatement ms, Object parameter) {
+    ShardingStrategy strategy = ms.getConfiguration() instanceof ReactiveConfiguration
+        ? ((ReactiveConfiguration) ms.getConfiguration()).getShardingStrategy(ms.getId())
+        : null;
+    if (strategy == null) {
+      return environment.getConnectionFactory();
+    }
+    List<ConnectionFactory> shards = environment.getShards();
+    int shard = strategy.getShard(ms, parameter, shards.size());
+    if (shard < 0 || shard >= shards.size()) {
+      throw new ReactiveMybatisException("Sharding strategy of statement " + ms.getId() + " chose shard " + shard + " out of " + shards.size());
+    }
+    return shards.get(shard);
+  }
+
+  private synchronized ReactiveTransaction transactionOn(ConnectionFactory connectionFactory, boolean autoCommit, MappedStatement ms) {
+    ReactiveTransaction transaction = transactions.get(connectionFactory);
+    if (transaction != null) {
+      return transaction;
+    }
+    if (!autoCommit && !transactions.isEmpty()) {
+      throw new ReactiveMybatisException((ms != null ? "Statement " + ms.getId() : "The connection of the session")
+          + " runs on another shard than the transaction of the session, a transaction cannot span shards");
+    }
+    transaction = connectionFactory == environment.getConnectionFactory()
+        ? primary
+        : environment.getTransactionFactory().newTransaction(connectionFactory, level, autoCommit);
+    transactions.put(connectionFactory, transaction);
+    return transaction;
+  }
+
+  @Override
+  public Mono<Void> commit() {
+    return forEach(ReactiveTransaction::commit, false);
+  }
+
+  @Override
+  public Mono<Void> rollback() {
+    return forEach(ReactiveTransaction::rollback, false);
+  }
+
+  @Override
+  public Mono<Void> close() {
+    return forEach(ReactiveTransaction::close, true);
+  }
+
+  @Override
+  public Mono<Integer> getTimeout() {
+    return primary.getTimeout();
+  }
+
+  @Override
+  public Mono<Boolean> isAutoCommit() {
+    return primary.isAutoCommit().defaultIfEmpty(false);
+  }
+
+  @Override
+  public Mono<Void> releaseConnection() {
+    return forEach(ReactiveTransaction::releaseConnection, true);
+  }
+
+  private Mono<Void> forEach(Function<ReactiveTransaction, Mono<Void>> operation, boolean end) {
+    return Flux.defer(() -> {
+      List<ReactiveTransaction> current;
+      synchronized (this) {
+        current = new ArrayList<>(transactions.values());
+        if (end) {
+          // the next statement may choose another shard
+          transactions.clear();
+        }
+      }
+      return Flux.fromIterable(current).concatMap(operation);
+    }).then();
+  }
+
+}
@@ -17,14 +17,15 @@ package com.waterdrop.mybatisreactive.transaction.r2dbc;
 
 import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
 import com.waterdrop.mybatisreactive.toolkit.TransactionConvert;
+import com.waterdrop.mybatisreactive.transaction.ConnectionScope;
 import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
 import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.IsolationLevel;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.session.TransactionIsolationLevel;
 import org.apache.ibatis.transaction.Transaction;
-import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
 
 import java.sql.SQLException;
@@ -45,15 +46,23 @@ public class R2dbcTransaction implements ReactiveTransaction {
   private static final Log log = LogFactory.getLog(R2dbcTransaction.class);
 
   protected Mono<Connection> connection;
+  private Mono<Connection> acquisition;
   private AtomicReference<Connection> connectionRef = new AtomicReference<>();
   protected ConnectionFactory connectionFactory;
   protected TransactionIsolationLevel level;
   protected boolean autoCommit;
+  protected boolean skipSetAutoCommitOnClose;
+  private volatile boolean borrowed;
 
   public R2dbcTransaction(ConnectionFactory cf, TransactionIsolationLevel desiredLevel, boolean desiredAutoCommit) {
+    this(cf, desiredLevel, desiredAutoCommit, false);
+  }
+
+  public R2dbcTransaction(ConnectionFactory cf, TransactionIsolationLevel desiredLevel, boolean desiredAutoCommit, boolean skipSetAutoCommitOnClose) {
     connectionFactory = cf;
     level = desiredLevel;
     autoCommit = desiredAutoCommit;
+    this.skipSetAutoCommitOnClose = skipSetAutoCommitOnClose;
   }
 
   public R2dbcTransaction(Connection connection) {
@@ -65,11 +74,25 @@ public class R2dbcTransaction implements ReactiveTransaction {
   }
 
   @Override
-  public Mono<Connection> getConnection() {
-    if (connection == null) {
-      connection = openConnection();
+  public synchronized Mono<Connection> getConnection() {
+    if (acquisition == null) {
+      if (connection == null) {
+        connection = openConnection();
+      }
+      // one acquisition shared by every statement of the session, a failed one is attempted again on the next call
+      Mono<Connection> source = connection;
+      acquisition = source.doOnNext(connectionRef::set)
+          .doOnError(e -> resetAcquisition(source))
+          .cache();
+    }
+    return acquisition;
+  }
+
+  private synchronized void resetAcquisition(Mono<Connection> source) {
+    if (connection == source && connectionFactory != null) {
+      connection = null;
+      acquisition = null;
     }
-    return connection.doOnNext(c-> connectionRef.updateAndGet(prev->c));
   }
 
   private void validConnectionRef(){
@@ -78,8 +101,16 @@ public class R2dbcTransaction implements ReactiveTransaction {
     }
   }
 
+  private boolean isReleased() {
+    // nothing to end once the connection went back, see releaseConnection()
+    return connection == null && connectionFactory != null && connectionRef.get() == null;
+  }
+
   @Override
   public Mono<Void> commit() {
+    if (isReleased()) {
+      return Mono.empty();
+    }
     if(connection == null){
       throw new ReactiveMybatisException("connection is null when committing");
     }
@@ -116,9 +147,16 @@ public class R2dbcTransaction implements ReactiveTransaction {
 
   @Override
   public Mono<Void> close() {
+    if (isReleased()) {
+      return Mono.empty();
+    }
     if (connection != null) {
       validConnectionRef();
-      Mono<Void> resetMono = resetAutoCommit();
+      if (borrowed) {
+        // the connection of a ConnectionScope is closed by the scope
+        return Mono.empty();
+      }
+      Mono<Void> resetMono = skipSetAutoCommitOnClose ? Mono.empty() : resetAutoCommit();
       if (log.isDebugEnabled()) {
         log.debug("Closing JDBC Connection [" + connection + "]");
       }
@@ -129,19 +167,32 @@ public class R2dbcTransaction implements ReactiveTransaction {
   }
 
   protected Mono<Void> setDesiredAutoCommit(boolean desiredAutoCommit) {
-    return connection.doOnNext(c -> connectionRef.updateAndGet(prev -> c))
-            .then(Mono.defer(() -> {
-              Connection c = connectionRef.get();
-              if (c.isAutoCommit() != desiredAutoCommit) {
-                if (log.isDebugEnabled()) {
-                  log.debug("Setting autocommit to " + desiredAutoCommit + " on JDBC Connection [" + connection + "]");
-                }
-                return Mono.from(c.setAutoCommit(desiredAutoCommit));
-              } else {
-                return Mono.empty();
-              }
-            }));
+    return Mono.defer(() -> {
+      Connection c = connectionRef.get();
+      if (c.isAutoCommit() != desiredAutoCommit) {
+        if (log.isDebugEnabled()) {
+          log.debug("Setting autocommit to " + desiredAutoCommit + " on JDBC Connection [" + c + "]");
+        }
+        return Mono.from(c.setAutoCommit(desiredAutoCommit));
+      } else {
+        return Mono.empty();
+      }
+    });
+  }
 
+  protected Mono<Void> setDesiredIsolationLevel(TransactionIsolationLevel desiredLevel) {
+    return Mono.defer(() -> {
+      Connection c = connectionRef.get();
+      IsolationLevel isolationLevel = TransactionConvert.TransactionIsolationLevelConvertIsolationLevel(desiredLevel);
+      // a pooled connection keeps the level of its previous lease
+      if (isolationLevel.equals(c.getTransactionIsolationLevel())) {
+        return Mono.empty();
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Setting isolation level to " + isolationLevel.asSql() + " on JDBC Connection [" + c + "]");
+      }
+      return Mono.from(c.setTransactionIsolationLevel(isolationLevel));
+    });
   }
 
   protected Mono<Void> resetAutoCommit() {
@@ -163,19 +214,23 @@ public class R2dbcTransaction implements ReactiveTransaction {
   }
 
   protected Mono<Connection> openConnection() {
-    if (log.isDebugEnabled()) {
-      log.debug("Opening JDBC Connection");
-    }
-    connection = Mono.from(connectionFactory.create());
-    if (level != null) {
-      connection = connection.doOnNext(c -> connectionRef.updateAndGet(prev -> c))
-              .then(Mono.defer(() -> {
-                Publisher<Void> transactionLevelPublisher = connectionRef.get().setTransactionIsolationLevel(TransactionConvert.TransactionIsolationLevelConvertIsolationLevel(level));
-                return Mono.from(transactionLevelPublisher).then(Mono.just(connectionRef.get()));
-              }));
-    }
-    Mono<Void> desiredAutoCommitMono = setDesiredAutoCommit(autoCommit);
-    return connection.then(desiredAutoCommitMono).then(Mono.defer(()->Mono.just(connectionRef.get())));
+    // the connection of a scope is shared as it is, a session in a transaction acquires its own
+    Mono<Connection> scoped = autoCommit ? ConnectionScope.currentConnection(connectionFactory) : Mono.empty();
+    return scoped
+        .doOnNext(c -> {
+          borrowed = true;
+          connectionRef.set(c);
+        })
+        .switchIfEmpty(Mono.defer(() -> {
+          if (log.isDebugEnabled()) {
+            log.debug("Opening JDBC Connection");
+          }
+          return Mono.from(connectionFactory.create())
+              .doOnNext(connectionRef::set)
+              .flatMap(c -> (level != null ? setDesiredIsolationLevel(level) : Mono.<Void>empty())
+                  .then(setDesiredAutoCommit(autoCommit))
+                  .thenReturn(c));
+        }));
   }
 
   @Override
@@ -183,4 +238,33 @@ public class R2dbcTransaction implements ReactiveTransaction {
     return Mono.empty();
   }
 
+  @Override
+  public Mono<Boolean> isAutoCommit() {
+    return Mono.just(connectionFactory != null && autoCommit);
+  }
+
+  @Override
+  public Mono<Void> releaseConnection() {
+    if (connectionFactory == null) {
+      return Mono.empty();
+    }
+    Connection c;
+    synchronized (this) {
+      c = connectionRef.getAndSet(null);
+      if (c == null) {
+        return Mono.empty();
+      }
+      connection = null;
+      acquisition = null;
+    }
+    if (borrowed) {
+      borrowed = false;
+      return Mono.empty();
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Releasing JDBC Connection [" + c + "]");
+    }
+    return Mono.from(c.close());
+  }
+
 }
@@ -21,6 +21,7 @@ import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.ConnectionFactory;
 import org.apache.ibatis.session.TransactionIsolationLevel;
 
+import java.util.Properties;
 
 
 /**
@@ -32,6 +33,26 @@ import org.apache.ibatis.session.TransactionIsolationLevel;
  */
 public class R2dbcTransactionFactory implements ReactiveTransactionFactory {
 
+  private boolean skipSetAutoCommitOnClose;
+
+  @Override
+  public void setProperties(Properties props) {
+    if (props == null) {
+      return;
+    }
+    String value = props.getProperty("skipSetAutoCommitOnClose");
+    if (value != null) {
+      skipSetAutoCommitOnClose = Boolean.parseBoolean(value);
+    }
+  }
+
+  /**
+   * Skips resetting autocommit before a connection is closed, for pools that already reset it on release.
+   */
+  public void setSkipSetAutoCommitOnClose(boolean skipSetAutoCommitOnClose) {
+    this.skipSetAutoCommitOnClose = skipSetAutoCommitOnClose;
+  }
+
   @Override
   public ReactiveTransaction newTransaction(Connection conn) {
     return new R2dbcTransaction(conn);
@@ -39,6 +60,6 @@ public class R2dbcTransactionFactory implements ReactiveTransactionFactory {
 
   @Override
   public ReactiveTransaction newTransaction(ConnectionFactory connectionFactory, TransactionIsolationLevel level, boolean autoCommit) {
-    return new R2dbcTransaction(connectionFactory, level, autoCommit);
+    return new R2dbcTransaction(connectionFactory, level, autoCommit, skipSetAutoCommitOnClose);
   }
 }
@@ -0,0 +1,221 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive;
+
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransactionFactory;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Proxy based R2DBC connections for tests, named by their {@code toString()}.
+ */
+public final class R2dbcStubs {
+
+  private R2dbcStubs() {
+  }
+
+  /**
+   * Returns the results of a statement of a connection, e.g. {@link #rowsUpdated(int)}.
+   */
+  public interface Statements {
+    Publisher<? extends Result> execute(String connection, String sql, List<Object> bindings);
+  }
+
+  public static ConnectionFactory connectionFactory(String name) {
+    return connectionFactory(name, (connection, sql, bindings) -> Flux.empty());
+  }
+
+  public static ConnectionFactory connectionFactory(String name, Statements statements) {
+    Connection connection = connection(name, statements);
+    return (ConnectionFactory) Proxy.newProxyInstance(R2dbcStubs.class.getClassLoader(), new Class[] {ConnectionFactory.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "create":
+              return Mono.just(connection);
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return name;
+          }
+        });
+  }
+
+  public static Connection connection(String name, Statements statements) {
+    return (Connection) Proxy.newProxyInstance(R2dbcStubs.class.getClassLoader(), new Class[] {Connection.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "createStatement":
+              return statement(name, (String) args[0], statements);
+            case "toString":
+              return name;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return Publisher.class.isAssignableFrom(method.getReturnType()) ? Mono.empty() : null;
+          }
+        });
+  }
+
+  private static Statement statement(String connection, String sql, Statements statements) {
+    List<Object> bindings = Collections.synchronizedList(new ArrayList<>());
+    return (Statement) Proxy.newProxyInstance(R2dbcStubs.class.getClassLoader(), new Class[] {Statement.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "execute":
+              return Flux.defer(() -> statements.execute(connection, sql, bindings));
+            case "bind":
+              bindings.add(args[1]);
+              return proxy;
+            case "bindNull":
+              bindings.add(null);
+              return proxy;
+            default:
+              return proxy;
+          }
+        });
+  }
+
+  public static Result rowsUpdated(int rowsUpdated) {
+    return result(Mono.just(rowsUpdated), Flux.empty());
+  }
+
+  public static Result rows(List<Map<String, Object>> rows) {
+    return rows(Flux.fromIterable(rows));
+  }
+
+  public static Result rows(Flux<Map<String, Object>> rows) {
+    return result(Mono.empty(), rows);
+  }
+
+  @SafeVarargs
+  public static Result rows(Map<String, Object>... rows) {
+    return rows(Arrays.asList(rows));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Result result(Mono<Integer> rowsUpdated, Flux<Map<String, Object>> rows) {
+    return (Result) Proxy.newProxyInstance(R2dbcStubs.class.getClassLoader(), new Class[] {Result.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getRowsUpdated":
+              return rowsUpdated;
+            case "map":
+              BiFunction<Row, RowMetadata, Object> mapping = (BiFunction<Row, RowMetadata, Object>) args[0];
+              return rows.map(row -> mapping.apply(row(row), metadata(row)));
+            default:
+              return null;
+          }
+        });
+  }
+
+  private static Row row(Map<String, Object> row) {
+    List<String> columns = new ArrayList<>(row.keySet());
+    return (Row) Proxy.newProxyInstance(R2dbcStubs.class.getClassLoader(), new Class[] {Row.class},
+        (proxy, method, args) -> {
+          if (!method.getName().equals("get")) {
+            return null;
+          }
+          Object value = args[0] instanceof Integer ? row.get(columns.get((Integer) args[0])) : row.get(args[0]);
+          return args.length > 1 ? convert(value, (Class<?>) args[1]) : value;
+        });
+  }
+
+  private static Object convert(Object value, Class<?> type) {
+    if (value instanceof Number) {
+      if (type == Long.class || type == long.class) {
+        return ((Number) value).longValue();
+      } else if (type == Integer.class || type == int.class) {
+        return ((Number) value).intValue();
+      }
+    }
+    return value;
+  }
+
+  private static RowMetadata metadata(Map<String, Object> row) {
+    return (RowMetadata) Proxy.newProxyInstance(R2dbcStubs.class.getClassLoader(), new Class[] {RowMetadata.class},
+        (proxy, method, args) -> method.getName().equals("getColumnNames") ? new ArrayList<>(row.keySet()) : null);
+  }
+
+  /**
+   * Returns a factory of transactions on a connection of their connection factory, recording
+   * {@code <connection factory>.commit}, {@code .rollback} and {@code .close} in calls.
+   */
+  public static ReactiveTransactionFactory transactionFactory(List<String> calls) {
+    return new ReactiveTransactionFactory() {
+      @Override
+      public ReactiveTransaction newTransaction(Connection conn) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public ReactiveTransaction newTransaction(ConnectionFactory connectionFactory, TransactionIsolationLevel level, boolean autoCommit) {
+        return new ReactiveTransaction() {
+          @Override
+          public Mono<Connection> getConnection() {
+            return Mono.from(connectionFactory.create());
+          }
+
+          @Override
+          public Mono<Void> commit() {
+            return Mono.fromRunnable(() -> calls.add(connectionFactory + ".commit"));
+          }
+
+          @Override
+          public Mono<Void> rollback() {
+            return Mono.fromRunnable(() -> calls.add(connectionFactory + ".rollback"));
+          }
+
+          @Override
+          public Mono<Void> close() {
+            return Mono.fromRunnable(() -> calls.add(connectionFactory + ".close"));
+          }
+
+          @Override
+          public Mono<Integer> getTimeout() {
+            return Mono.empty();
+          }
+
+          @Override
+          public Mono<Boolean> isAutoCommit() {
+            return Mono.just(autoCommit);
+          }
+        };
+      }
+    };
+  }
+
+}
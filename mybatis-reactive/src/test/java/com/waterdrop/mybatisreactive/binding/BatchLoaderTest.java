@@ -0,0 +1,119 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.binding;
+
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchLoaderTest {
+
+  private final List<Collection<?>> batches = Collections.synchronizedList(new ArrayList<>());
+  private final List<Object> transactions = Collections.synchronizedList(new ArrayList<>());
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final ReactiveSqlSession sqlSession = sqlSession();
+
+  @Test
+  void shouldMergeConcurrentLoadsIntoOneSelect() {
+    BatchLoader loader = new BatchLoader(configuration, "selectByIds", "id", 100, Duration.ofMillis(200));
+
+    StepVerifier.create(Mono.zip(loader.load(sqlSession, 1L), loader.load(sqlSession, 2), loader.load(sqlSession, 1L)))
+        .assertNext(users -> {
+          assertEquals("user1", ((Map<?, ?>) users.getT1()).get("name"));
+          assertEquals("user2", ((Map<?, ?>) users.getT2()).get("name"));
+          assertEquals("user1", ((Map<?, ?>) users.getT3()).get("name"));
+        })
+        .verifyComplete();
+    assertEquals(1, batches.size());
+    assertEquals(2, batches.get(0).size());
+  }
+
+  @Test
+  void shouldCompleteEmptyForMissingKey() {
+    BatchLoader loader = new BatchLoader(configuration, "selectByIds", "id", 100, Duration.ofMillis(1));
+
+    StepVerifier.create(loader.load(sqlSession, 404L)).verifyComplete();
+  }
+
+  @Test
+  void shouldDispatchWhenBatchIsFull() {
+    BatchLoader loader = new BatchLoader(configuration, "selectByIds", "id", 2, Duration.ofSeconds(30));
+
+    StepVerifier.create(Flux.merge(loader.load(sqlSession, 1L), loader.load(sqlSession, 2L)).count())
+        .expectNext(2L)
+        .verifyComplete();
+    assertEquals(1, batches.size());
+  }
+
+  @Test
+  void shouldBatchOnlyCallersOfTheSameContext() {
+    BatchLoader loader = new BatchLoader(configuration, "selectByIds", "id", 100, Duration.ofMillis(200));
+
+    StepVerifier.create(Mono.zip(
+        loader.load(sqlSession, 1L).contextWrite(Context.of("transaction", "tx1")),
+        loader.load(sqlSession, 2L).contextWrite(Context.of("transaction", "tx2")),
+        loader.load(sqlSession, 3L).contextWrite(Context.of("transaction", "tx1"))))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertEquals(2, batches.size());
+    assertEquals(Arrays.asList("tx1", "tx2"), transactions.stream().sorted().collect(Collectors.toList()));
+  }
+
+  private ReactiveSqlSession sqlSession() {
+    return (ReactiveSqlSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ReactiveSqlSession.class},
+        (proxy, method, args) -> {
+          if ("getConfiguration".equals(method.getName())) {
+            return configuration;
+          }
+          if ("selectList".equals(method.getName())) {
+            Collection<?> keys = (Collection<?>) args[1];
+            batches.add(keys);
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Object key : keys) {
+              if (((Number) key).longValue() < 100) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("id", ((Number) key).intValue());
+                row.put("name", "user" + key);
+                rows.add(row);
+              }
+            }
+            return Flux.deferContextual(context -> {
+              context.getOrEmpty("transaction").ifPresent(transactions::add);
+              return Flux.fromIterable(rows);
+            });
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+}
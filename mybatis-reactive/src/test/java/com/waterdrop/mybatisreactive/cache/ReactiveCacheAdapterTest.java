@@ -0,0 +1,52 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache;
+
+import com.waterdrop.mybatisreactive.cache.impl.TinyLfuCache;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactiveCacheAdapterTest {
+
+  @Test
+  void shouldReportStatsOfDecoratedTinyLfuCache() {
+    ReactiveConfiguration configuration = new ReactiveConfiguration();
+    Properties properties = new Properties();
+    properties.setProperty("maximumWeight", "10");
+    Cache cache = new CacheBuilder("users").implementation(TinyLfuCache.class).properties(properties).build();
+    ReactiveCache reactiveCache = configuration.getReactiveCache(cache);
+
+    assertTrue(cache instanceof LoggingCache);
+    for (int i = 0; i < 20; i++) {
+      reactiveCache.put(i, i).block();
+    }
+    reactiveCache.get(19).block();
+    reactiveCache.get(-1).block();
+    CacheStats stats = reactiveCache.getStats();
+    assertEquals(10, stats.getEvictionCount());
+    assertEquals(1, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+  }
+
+}
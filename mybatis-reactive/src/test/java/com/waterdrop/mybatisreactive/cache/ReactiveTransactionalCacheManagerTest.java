@@ -0,0 +1,72 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReactiveTransactionalCacheManagerTest {
+
+  @Test
+  void shouldPublishEntriesOnCommit() {
+    Cache cache = new PerpetualCache("users");
+    ReactiveCache reactiveCache = new ReactiveCacheAdapter(cache);
+    ReactiveTransactionalCacheManager tcm = new ReactiveTransactionalCacheManager();
+    CacheKey key = new CacheKey(new Object[] {"selectById", 1});
+
+    tcm.putObject(reactiveCache, key, Collections.singletonList("user1"));
+    assertNull(cache.getObject(key));
+
+    StepVerifier.create(tcm.commit()).verifyComplete();
+    assertEquals(Collections.singletonList("user1"), cache.getObject(key));
+  }
+
+  @Test
+  void shouldDiscardEntriesOnRollback() {
+    Cache cache = new PerpetualCache("users");
+    ReactiveCache reactiveCache = new ReactiveCacheAdapter(cache);
+    ReactiveTransactionalCacheManager tcm = new ReactiveTransactionalCacheManager();
+    CacheKey key = new CacheKey(new Object[] {"selectById", 1});
+
+    tcm.putObject(reactiveCache, key, Collections.singletonList("user1"));
+    StepVerifier.create(tcm.rollback()).verifyComplete();
+    StepVerifier.create(tcm.commit()).verifyComplete();
+    assertNull(cache.getObject(key));
+  }
+
+  @Test
+  void shouldHideCachedEntriesAfterClear() {
+    Cache cache = new PerpetualCache("users");
+    ReactiveCache reactiveCache = new ReactiveCacheAdapter(cache);
+    ReactiveTransactionalCacheManager tcm = new ReactiveTransactionalCacheManager();
+    CacheKey key = new CacheKey(new Object[] {"selectById", 1});
+    cache.putObject(key, Collections.singletonList("user1"));
+
+    tcm.clear(reactiveCache);
+    StepVerifier.create(tcm.getObject(reactiveCache, key)).verifyComplete();
+    StepVerifier.create(tcm.commit()).verifyComplete();
+    assertNull(cache.getObject(key));
+  }
+
+}
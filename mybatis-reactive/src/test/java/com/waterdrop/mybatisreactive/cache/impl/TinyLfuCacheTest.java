@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.cache.impl;
+
+import com.waterdrop.mybatisreactive.cache.CacheStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TinyLfuCacheTest {
+
+  @Test
+  void shouldStayWithinMaximumWeight() {
+    TinyLfuCache cache = new TinyLfuCache("test");
+    cache.setMaximumWeight(100);
+    for (int i = 0; i < 1000; i++) {
+      cache.putObject(i, i);
+    }
+    assertTrue(cache.getWeightedSize() <= 100);
+    assertEquals(900, cache.getStats().getEvictionCount());
+  }
+
+  @Test
+  void shouldWeighListsByElementCount() {
+    TinyLfuCache cache = new TinyLfuCache("test");
+    cache.setMaximumWeight(10);
+    cache.putObject("a", Arrays.asList(1, 2, 3, 4, 5, 6));
+    cache.putObject("b", Arrays.asList(1, 2, 3, 4, 5, 6));
+    assertEquals(1, cache.getSize());
+    assertTrue(cache.getWeightedSize() <= 10);
+  }
+
+  @Test
+  void shouldKeepFrequentlyUsedEntriesUnderScan() {
+    TinyLfuCache cache = new TinyLfuCache("test");
+    cache.setMaximumWeight(100);
+    for (int i = 0; i < 50; i++) {
+      cache.putObject("hot" + i, i);
+    }
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 50; i++) {
+        cache.getObject("hot" + i);
+      }
+    }
+    for (int i = 0; i < 10_000; i++) {
+      cache.putObject("scan" + i, i);
+    }
+    int retained = 0;
+    for (int i = 0; i < 50; i++) {
+      if (cache.getObject("hot" + i) != null) {
+        retained++;
+      }
+    }
+    assertTrue(retained >= 45, "only " + retained + " hot entries survived the scan");
+  }
+
+  @Test
+  void shouldNotTakeEntryDemotedFromProtectedForCandidate() {
+    TinyLfuCache cache = new TinyLfuCache("test");
+    cache.setMaximumWeight(10);
+    for (int i = 0; i < 5; i++) {
+      cache.getObject("victim");
+    }
+    cache.putObject("victim", 0);
+    for (int i = 0; i < 9; i++) {
+      cache.putObject("p" + i, i);
+    }
+    // fills protected with p0 to p6, then promoting p7 demotes p0 behind the victim in probation
+    for (int i = 0; i < 8; i++) {
+      cache.getObject("p" + i);
+    }
+    // growing an entry overflows the cache without any entry leaving the window
+    cache.putObject("p1", Arrays.asList(1, 2));
+
+    assertNull(cache.getObject("victim"));
+    assertNotNull(cache.getObject("p0"));
+    assertEquals(10, cache.getWeightedSize());
+  }
+
+  @Test
+  void shouldExpireAfterWrite() {
+    AtomicLong now = new AtomicLong();
+    TinyLfuCache cache = new TinyLfuCache("test");
+    cache.setTicker(now::get);
+    cache.setExpireAfterWrite(1000);
+    cache.putObject("a", 1);
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+    assertNotNull(cache.getObject("a"));
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    assertNull(cache.getObject("a"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldExpireAfterAccess() {
+    AtomicLong now = new AtomicLong();
+    TinyLfuCache cache = new TinyLfuCache("test");
+    cache.setTicker(now::get);
+    cache.setExpireAfterAccess(1000);
+    cache.putObject("a", 1);
+    for (int i = 0; i < 5; i++) {
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+      assertNotNull(cache.getObject("a"));
+    }
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+    assertNull(cache.getObject("a"));
+  }
+
+  @Test
+  void shouldCountHitsAndMisses() {
+    TinyLfuCache cache = new TinyLfuCache("test");
+    cache.putObject("a", 1);
+    cache.getObject("a");
+    cache.getObject("a");
+    cache.getObject("b");
+    CacheStats stats = cache.getStats();
+    assertEquals(2, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+    assertEquals(0, stats.getEvictionCount());
+  }
+
+}
@@ -0,0 +1,203 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
+import io.r2dbc.spi.Connection;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BaseReactiveExecutorTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final AtomicInteger releases = new AtomicInteger();
+  private final AtomicInteger executions = new AtomicInteger();
+  private final AtomicInteger closes = new AtomicInteger();
+  private boolean autoCommit = true;
+
+  @Test
+  void shouldReleaseConnectionAfterEachStatement() throws Exception {
+    ReactiveExecutor executor = executor(Flux.just(1, 2));
+    MappedStatement ms = selectStatement();
+
+    StepVerifier.create(executor.query(ms, null, RowBounds.DEFAULT, null)).expectNext(1, 2).verifyComplete();
+    StepVerifier.create(executor.query(ms, 1, RowBounds.DEFAULT, null)).expectNext(1, 2).verifyComplete();
+    assertEquals(2, releases.get());
+  }
+
+  @Test
+  void shouldKeepConnectionWhileAnotherStatementRuns() throws Exception {
+    Sinks.Many<Integer> rows = Sinks.many().multicast().onBackpressureBuffer();
+    ReactiveExecutor executor = executor(rows.asFlux());
+    MappedStatement ms = selectStatement();
+
+    StepVerifier.create(Flux.merge(executor.query(ms, null, RowBounds.DEFAULT, null), executor.query(ms, 1, RowBounds.DEFAULT, null)))
+        .then(() -> {
+          assertEquals(0, releases.get());
+          rows.tryEmitNext(1);
+          rows.tryEmitComplete();
+        })
+        .expectNext(1, 1)
+        .verifyComplete();
+    assertEquals(1, releases.get());
+  }
+
+  @Test
+  void shouldCoalesceQueriesOnlyOutsideTransactions() throws Exception {
+    assertEquals(1, coalescedExecutions());
+    executions.set(0);
+    autoCommit = false;
+    assertEquals(2, coalescedExecutions());
+  }
+
+  @Test
+  void shouldRunSharedQueryOnConnectionOfItsOwn() throws Exception {
+    Sinks.Many<Integer> rows = Sinks.many().multicast().onBackpressureBuffer();
+    ReactiveExecutor first = executor(rows.asFlux());
+    ReactiveExecutor second = executor(rows.asFlux());
+    MappedStatement ms = selectStatement();
+    configuration.getStatementOptions(ms.getId()).setCoalesce(true);
+
+    Disposable cancelled = first.query(ms, null, RowBounds.DEFAULT, null).subscribe();
+    StepVerifier.create(second.query(ms, null, RowBounds.DEFAULT, null))
+        .then(() -> {
+          // the caller that started the execution leaves and closes its session
+          cancelled.dispose();
+          first.close(false).block();
+          rows.tryEmitNext(1);
+          rows.tryEmitComplete();
+        })
+        .expectNext(1)
+        .verifyComplete();
+    assertEquals(1, executions.get());
+    assertEquals(2, closes.get());
+  }
+
+  private int coalescedExecutions() throws Exception {
+    Sinks.Many<Integer> rows = Sinks.many().multicast().onBackpressureBuffer();
+    ReactiveExecutor executor = executor(rows.asFlux());
+    MappedStatement ms = selectStatement();
+    configuration.getStatementOptions(ms.getId()).setCoalesce(true);
+
+    StepVerifier.create(Flux.merge(executor.query(ms, null, RowBounds.DEFAULT, null), executor.query(ms, null, RowBounds.DEFAULT, null)))
+        .then(() -> {
+          rows.tryEmitNext(1);
+          rows.tryEmitComplete();
+        })
+        .expectNext(1, 1)
+        .verifyComplete();
+    return executions.get();
+  }
+
+  private MappedStatement selectStatement() {
+    if (configuration.hasStatement("selectUser")) {
+      return configuration.getMappedStatement("selectUser");
+    }
+    MappedStatement ms = new MappedStatement.Builder(configuration, "selectUser",
+        new StaticSqlSource(configuration, "select * from users"), SqlCommandType.SELECT).build();
+    configuration.addMappedStatement(ms);
+    return ms;
+  }
+
+  private BaseReactiveExecutor executor(Flux<Integer> rows) {
+    configuration.setReleaseAfterStatement(true);
+    return new BaseReactiveExecutor(configuration, new AutoCommitTransaction()) {
+      @Override
+      protected BaseReactiveExecutor newSharedExecutor() {
+        return executor(rows);
+      }
+
+      @Override
+      protected Mono<Integer> doUpdate(MappedStatement ms, Object parameter) {
+        return Mono.just(1);
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return Collections.emptyList();
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      protected <E> Flux<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        return (Flux<E>) rows.doOnSubscribe(s -> executions.incrementAndGet());
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      protected <E> Flux<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        return (Flux<E>) rows;
+      }
+    };
+  }
+
+  private class AutoCommitTransaction implements ReactiveTransaction {
+
+    @Override
+    public Mono<Connection> getConnection() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> commit() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> rollback() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> close() {
+      return Mono.fromRunnable(closes::incrementAndGet);
+    }
+
+    @Override
+    public Mono<Integer> getTimeout() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Boolean> isAutoCommit() {
+      return Mono.just(autoCommit);
+    }
+
+    @Override
+    public Mono<Void> releaseConnection() {
+      return Mono.fromRunnable(releases::incrementAndGet);
+    }
+  }
+
+}
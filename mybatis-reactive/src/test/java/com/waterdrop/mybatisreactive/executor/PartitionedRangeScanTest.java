@@ -0,0 +1,116 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import com.waterdrop.mybatisreactive.mapping.PartitionedScanPolicy;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PartitionedRangeScanTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final MappedStatement ms = new MappedStatement.Builder(configuration, "orders.selectAll",
+      new StaticSqlSource(configuration, "select * from orders"), SqlCommandType.SELECT).build();
+
+  @Test
+  void shouldSplitKeysEvenly() {
+    PartitionedRangeScan scan = new PartitionedRangeScan(null, null, null, PartitionedScanPolicy.builder("id").build());
+
+    assertEquals(Arrays.asList(25L, 50L, 75L), scan.evenSplit(0L, 100L));
+    assertEquals(Arrays.asList(3, 5, 7), scan.evenSplit(1, 9));
+    assertEquals(Collections.singletonList(2), scan.evenSplit(1, 3));
+    assertEquals(Arrays.asList(LocalDate.of(2021, 1, 8), LocalDate.of(2021, 1, 16), LocalDate.of(2021, 1, 23)),
+        scan.evenSplit(LocalDate.of(2021, 1, 1), LocalDate.of(2021, 1, 31)));
+  }
+
+  @Test
+  void shouldSplitAtSampledQuantiles() {
+    PartitionedRangeScan scan = new PartitionedRangeScan(null, null, null, PartitionedScanPolicy.builder("id").partitions(3).build());
+
+    assertEquals(Arrays.asList("d", "g"), scan.quantiles(new ArrayList<>(Arrays.asList("i", "a", "c", "e", "g", "b", "h", "d", "f"))));
+    assertEquals(Collections.singletonList(1), scan.quantiles(new ArrayList<>(Arrays.asList(1, 1, 1))));
+  }
+
+  @Test
+  void shouldFilterTheSelectByRange() {
+    PartitionedRangeScan scan = new PartitionedRangeScan(null, null, null, PartitionedScanPolicy.builder("id").build());
+    BoundSql boundSql = ms.getBoundSql(null);
+
+    BoundSql first = scan.rangeBoundSql(ms, boundSql, null, 25L);
+    assertEquals("SELECT * FROM ( select * from orders ) partitioned_scan WHERE partitioned_scan.id < ? OR partitioned_scan.id IS NULL", first.getSql());
+    BoundSql middle = scan.rangeBoundSql(ms, boundSql, 25L, 50L);
+    assertEquals("SELECT * FROM ( select * from orders ) partitioned_scan WHERE partitioned_scan.id >= ? AND partitioned_scan.id < ?", middle.getSql());
+    assertEquals(Arrays.asList("_partitionLower", "_partitionUpper"),
+        middle.getParameterMappings().stream().map(ParameterMapping::getProperty).collect(Collectors.toList()));
+    assertEquals(25L, middle.getAdditionalParameter("_partitionLower"));
+    assertEquals(boundSql, scan.rangeBoundSql(ms, boundSql, null, null));
+  }
+
+  @Test
+  void shouldOrderRangesByKeyWithNullsFirst() {
+    PartitionedRangeScan scan = new PartitionedRangeScan(null, null, null, PartitionedScanPolicy.builder("id").ordered(true).build());
+    BoundSql boundSql = ms.getBoundSql(null);
+
+    assertEquals("SELECT * FROM ( select * from orders ) partitioned_scan WHERE partitioned_scan.id < ? OR partitioned_scan.id IS NULL"
+        + " ORDER BY CASE WHEN partitioned_scan.id IS NULL THEN 0 ELSE 1 END, partitioned_scan.id",
+        scan.rangeBoundSql(ms, boundSql, null, 25L).getSql());
+    assertEquals("SELECT * FROM ( select * from orders ) partitioned_scan WHERE partitioned_scan.id >= ?"
+        + " ORDER BY CASE WHEN partitioned_scan.id IS NULL THEN 0 ELSE 1 END, partitioned_scan.id",
+        scan.rangeBoundSql(ms, boundSql, 75L, null).getSql());
+  }
+
+  @Test
+  void shouldOrderRangesByKeyDescendingWithNullsLast() {
+    PartitionedRangeScan scan = new PartitionedRangeScan(null, null, null,
+        PartitionedScanPolicy.builder("id").ordered(true).descending(true).build());
+
+    assertEquals("SELECT * FROM ( select * from orders ) partitioned_scan WHERE partitioned_scan.id >= ? AND partitioned_scan.id < ?"
+        + " ORDER BY CASE WHEN partitioned_scan.id IS NULL THEN 1 ELSE 0 END, partitioned_scan.id DESC",
+        scan.rangeBoundSql(ms, ms.getBoundSql(null), 25L, 50L).getSql());
+  }
+
+  @Test
+  void shouldNotReadBeforeSubscription() {
+    AtomicInteger connections = new AtomicInteger();
+    ConnectionFactory connectionFactory = (ConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class[] {ConnectionFactory.class}, (proxy, method, args) -> {
+          connections.incrementAndGet();
+          return Mono.empty();
+        });
+    PartitionedRangeScan scan = new PartitionedRangeScan(null, null, connectionFactory, PartitionedScanPolicy.builder("id").build());
+
+    scan.execute(ms, null, null, ms.getBoundSql(null));
+    assertEquals(0, connections.get());
+  }
+
+}
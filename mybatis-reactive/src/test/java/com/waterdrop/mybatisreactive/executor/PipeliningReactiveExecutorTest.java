@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import com.waterdrop.mybatisreactive.R2dbcStubs;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PipeliningReactiveExecutorTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+  private final ConnectionFactory connectionFactory = R2dbcStubs.connectionFactory("db",
+      (connection, sql, bindings) -> Flux.deferContextual(context -> {
+        calls.add(sql + context.getOrDefault("tenant", ""));
+        return sql.startsWith("fail") ? Mono.error(new IllegalStateException(sql)) : Mono.just(R2dbcStubs.rowsUpdated(1));
+      }));
+  private final ReactiveExecutor executor = new PipeliningReactiveExecutor(configuration,
+      R2dbcStubs.transactionFactory(calls).newTransaction(connectionFactory, null, false));
+
+  @Test
+  void shouldSendIssuedStatementsInOrderOnce() throws Exception {
+    Mono<Integer> first = executor.update(statement("first"), null);
+    executor.update(statement("second"), null);
+    Mono<Integer> third = executor.update(statement("third"), null);
+    assertEquals(Collections.emptyList(), calls);
+
+    StepVerifier.create(third).expectNext(1).verifyComplete();
+    StepVerifier.create(first).expectNext(1).verifyComplete();
+    StepVerifier.create(executor.commit(true)).verifyComplete();
+    assertEquals(Arrays.asList("first", "second", "third", "db.commit"), calls);
+  }
+
+  @Test
+  void shouldFailCommitOnlyForUnobservedFailures() throws Exception {
+    StepVerifier.create(executor.update(statement("fail handled"), null).onErrorResume(e -> Mono.just(0)))
+        .expectNext(0)
+        .verifyComplete();
+    StepVerifier.create(executor.commit(true)).verifyComplete();
+
+    executor.update(statement("fail unobserved"), null);
+    StepVerifier.create(executor.commit(true)).verifyError(ExecutorException.class);
+  }
+
+  @Test
+  void shouldRunStatementsWithinTheCallersContext() throws Exception {
+    StepVerifier.create(executor.update(statement("update"), null).contextWrite(Context.of("tenant", " of tenant1")))
+        .expectNext(1)
+        .verifyComplete();
+    assertEquals(Collections.singletonList("update of tenant1"), calls);
+  }
+
+  private MappedStatement statement(String sql) {
+    return new MappedStatement.Builder(configuration, sql, new StaticSqlSource(configuration, sql), SqlCommandType.UPDATE).build();
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryCoalescerTest {
+
+  @Test
+  void shouldShareOneInFlightExecution() {
+    QueryCoalescer coalescer = new QueryCoalescer();
+    AtomicInteger executions = new AtomicInteger();
+    Sinks.Many<String> rows = Sinks.many().unicast().onBackpressureBuffer();
+    CacheKey key = new CacheKey(new Object[] {"selectById", 1});
+
+    Flux<String> first = coalescer.coalesce(key, () -> {
+      executions.incrementAndGet();
+      return rows.asFlux();
+    });
+    Flux<String> second = coalescer.coalesce(new CacheKey(new Object[] {"selectById", 1}), () -> {
+      executions.incrementAndGet();
+      return Flux.just("other");
+    });
+
+    StepVerifier.create(Flux.merge(first, second))
+        .then(() -> {
+          assertEquals(1, coalescer.getInFlightCount());
+          rows.tryEmitNext("user1");
+          rows.tryEmitComplete();
+        })
+        .expectNext("user1", "user1")
+        .verifyComplete();
+    assertEquals(1, executions.get());
+    assertEquals(0, coalescer.getInFlightCount());
+  }
+
+  @Test
+  void shouldReplayResultToCallerJoiningAsItCompletes() {
+    QueryCoalescer coalescer = new QueryCoalescer();
+    AtomicInteger executions = new AtomicInteger();
+    CacheKey key = new CacheKey(new Object[] {"selectById", 1});
+    Supplier<Flux<String>> query = () -> Flux.just("user" + executions.incrementAndGet());
+
+    // the second caller joins while the result of the first is delivered, before the entry is dropped
+    StepVerifier.create(coalescer.coalesce(key, query)
+        .concatMap(first -> coalescer.coalesce(key, query).map(second -> first + "," + second)))
+        .expectNext("user1,user1")
+        .verifyComplete();
+    assertEquals(1, executions.get());
+    assertEquals(0, coalescer.getInFlightCount());
+  }
+
+  @Test
+  void shouldExecuteAgainAfterCompletion() {
+    QueryCoalescer coalescer = new QueryCoalescer();
+    AtomicInteger executions = new AtomicInteger();
+    CacheKey key = new CacheKey(new Object[] {"selectById", 1});
+
+    for (int i = 0; i < 2; i++) {
+      StepVerifier.create(coalescer.coalesce(key, () -> Flux.just(executions.incrementAndGet())))
+          .expectNext(i + 1)
+          .verifyComplete();
+    }
+    assertEquals(2, executions.get());
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.session.defaults.DefaultReactiveSqlSession;
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
+import io.r2dbc.spi.Connection;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReactiveCachingExecutorTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final AtomicInteger queries = new AtomicInteger();
+  private final PerpetualCache cache = new PerpetualCache("users");
+  private final MappedStatement ms = new MappedStatement.Builder(configuration, "selectUser",
+      new StaticSqlSource(configuration, "select * from users"), SqlCommandType.SELECT)
+      .cache(cache)
+      .useCache(true)
+      .build();
+
+  @Test
+  void shouldPublishStagedResultsOnCommit() throws Exception {
+    ReactiveExecutor session = new ReactiveCachingExecutor(delegate());
+    ReactiveExecutor other = new ReactiveCachingExecutor(delegate());
+
+    StepVerifier.create(session.query(ms, null, RowBounds.DEFAULT, null)).expectNext("user1").verifyComplete();
+    StepVerifier.create(other.query(ms, null, RowBounds.DEFAULT, null)).expectNext("user1").verifyComplete();
+    assertEquals(2, queries.get());
+
+    StepVerifier.create(session.commit(true)).verifyComplete();
+    StepVerifier.create(other.query(ms, null, RowBounds.DEFAULT, null)).expectNext("user1").verifyComplete();
+    assertEquals(2, queries.get());
+  }
+
+  @Test
+  void shouldDiscardStagedResultsOnRollback() throws Exception {
+    ReactiveExecutor session = new ReactiveCachingExecutor(delegate());
+
+    StepVerifier.create(session.query(ms, null, RowBounds.DEFAULT, null)).expectNext("user1").verifyComplete();
+    StepVerifier.create(session.rollback(true)).verifyComplete();
+    StepVerifier.create(session.commit(true)).verifyComplete();
+    StepVerifier.create(new ReactiveCachingExecutor(delegate()).query(ms, null, RowBounds.DEFAULT, null))
+        .expectNext("user1")
+        .verifyComplete();
+    assertEquals(2, queries.get());
+  }
+
+  @Test
+  void shouldDiscardStagedResultsOnRollbackToSavepoint() throws Exception {
+    configuration.addMappedStatement(ms);
+    DefaultReactiveSqlSession session = new DefaultReactiveSqlSession(configuration, new ReactiveCachingExecutor(delegate()));
+
+    StepVerifier.create(session.selectList("selectUser")).expectNext("user1").verifyComplete();
+    StepVerifier.create(session.rollbackToSavepoint("unit")).verifyComplete();
+    StepVerifier.create(session.commit(true)).verifyComplete();
+    StepVerifier.create(new ReactiveCachingExecutor(delegate()).query(ms, null, RowBounds.DEFAULT, null))
+        .expectNext("user1")
+        .verifyComplete();
+    assertEquals(2, queries.get());
+  }
+
+  @Test
+  void shouldFlushCacheOnlyWhenUpdateIsSubscribed() throws Exception {
+    ReactiveExecutor session = new ReactiveCachingExecutor(delegate());
+    MappedStatement update = new MappedStatement.Builder(configuration, "updateUser",
+        new StaticSqlSource(configuration, "update users set name = 'user2'"), SqlCommandType.UPDATE)
+        .cache(cache)
+        .flushCacheRequired(true)
+        .build();
+
+    StepVerifier.create(session.query(ms, null, RowBounds.DEFAULT, null)).expectNext("user1").verifyComplete();
+    session.update(update, null);
+    StepVerifier.create(session.commit(true)).verifyComplete();
+    StepVerifier.create(new ReactiveCachingExecutor(delegate()).query(ms, null, RowBounds.DEFAULT, null))
+        .expectNext("user1")
+        .verifyComplete();
+    assertEquals(1, queries.get());
+
+    StepVerifier.create(session.update(update, null)).expectNext(1).verifyComplete();
+    StepVerifier.create(session.commit(true)).verifyComplete();
+    StepVerifier.create(new ReactiveCachingExecutor(delegate()).query(ms, null, RowBounds.DEFAULT, null))
+        .expectNext("user1")
+        .verifyComplete();
+    assertEquals(2, queries.get());
+  }
+
+  private ReactiveExecutor delegate() {
+    return new BaseReactiveExecutor(configuration, new NoOpTransaction()) {
+      @Override
+      protected Mono<Integer> doUpdate(MappedStatement ms, Object parameter) {
+        return Mono.just(1);
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return Collections.emptyList();
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      protected <E> Flux<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        return (Flux<E>) Flux.defer(() -> {
+          queries.incrementAndGet();
+          return Flux.just("user1");
+        });
+      }
+
+      @Override
+      protected <E> Flux<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        return Flux.empty();
+      }
+    };
+  }
+
+  private static class NoOpTransaction implements ReactiveTransaction {
+
+    @Override
+    public Mono<Connection> getConnection() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> commit() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> rollback() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> close() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Integer> getTimeout() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Boolean> isAutoCommit() {
+      return Mono.just(true);
+    }
+
+    @Override
+    public Mono<Void> rollbackToSavepoint(String name) {
+      return Mono.empty();
+    }
+  }
+
+}
@@ -0,0 +1,240 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor;
+
+import com.waterdrop.mybatisreactive.R2dbcStubs;
+import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
+import com.waterdrop.mybatisreactive.mapping.PartitionedScanPolicy;
+import com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment;
+import com.waterdrop.mybatisreactive.mapping.ReplicaSelector;
+import com.waterdrop.mybatisreactive.mapping.ScatterGatherPolicy;
+import com.waterdrop.mybatisreactive.metrics.StatementStats;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.session.defaults.DefaultReactiveSqlSession;
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransaction;
+import com.waterdrop.mybatisreactive.transaction.ReactiveTransactionFactory;
+import com.waterdrop.mybatisreactive.transaction.ReadWriteSplittingTransaction;
+import com.waterdrop.mybatisreactive.transaction.ShardingTransaction;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimpleReactiveExecutorTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final AtomicBoolean driverCancelled = new AtomicBoolean();
+  private final ConnectionFactory connectionFactory = R2dbcStubs.connectionFactory("db",
+      (connection, sql, bindings) -> Mono.just(R2dbcStubs.rows(Flux.<Map<String, Object>, Integer>generate(() -> 0, (id, sink) -> {
+        sink.next(Collections.singletonMap("id", id));
+        return id + 1;
+      }).doOnCancel(() -> driverCancelled.set(true)))));
+  private final ReactiveExecutor executor = new SimpleReactiveExecutor(configuration,
+      R2dbcStubs.transactionFactory(new ArrayList<>()).newTransaction(connectionFactory, null, true));
+  private final MappedStatement select = select("selectAll");
+
+  @Test
+  void shouldPropagateCancellationToTheDriver() throws Exception {
+    StepVerifier.create(executor.query(select, null, RowBounds.DEFAULT, null).take(2))
+        .expectNextCount(2)
+        .verifyComplete();
+
+    assertTrue(driverCancelled.get());
+    StatementStats stats = configuration.getStatementMetrics().getStats(select.getId());
+    assertEquals(1, stats.getExecutions());
+    assertEquals(1, stats.getCancellations());
+  }
+
+  @Test
+  void shouldNotCountCancellationsRequestedByTheFramework() {
+    StepVerifier.create(new DefaultReactiveSqlSession(configuration, executor).selectOne(select.getId()))
+        .verifyError(TooManyResultsException.class);
+
+    assertTrue(driverCancelled.get());
+    assertEquals(0, configuration.getStatementMetrics().getStats(select.getId()).getCancellations());
+  }
+
+  @Test
+  void shouldTimeOutWhileRowsOfTheResultAreLate() throws Exception {
+    AtomicBoolean rowsCancelled = new AtomicBoolean();
+    ConnectionFactory slow = R2dbcStubs.connectionFactory("slow", (connection, sql, bindings) -> Mono.just(R2dbcStubs.rows(
+        Flux.just(Collections.<String, Object>singletonMap("id", 1)).delaySubscription(Duration.ofSeconds(10))
+            .doOnCancel(() -> rowsCancelled.set(true)))));
+    ReactiveExecutor slowExecutor = new SimpleReactiveExecutor(configuration,
+        R2dbcStubs.transactionFactory(new ArrayList<>()).newTransaction(slow, null, true));
+    ResultMap resultMap = new ResultMap.Builder(configuration, "selectSlow-Inline", HashMap.class, new ArrayList<>()).build();
+    MappedStatement ms = new MappedStatement.Builder(configuration, "selectSlow", new StaticSqlSource(configuration, "select * from users"),
+        SqlCommandType.SELECT).resultMaps(Collections.singletonList(resultMap)).timeout(1).build();
+
+    StepVerifier.create(slowExecutor.query(ms, null, RowBounds.DEFAULT, null))
+        .expectError(R2dbcTimeoutException.class)
+        .verify(Duration.ofSeconds(5));
+    assertTrue(rowsCancelled.get());
+  }
+
+  @Test
+  void shouldHedgeOnAReplicaOfTheSelector() throws Exception {
+    ConnectionFactory primary = R2dbcStubs.connectionFactory("primary");
+    ConnectionFactory slow = R2dbcStubs.connectionFactory("replica1", (connection, sql, bindings) -> Flux.never());
+    ConnectionFactory fast = R2dbcStubs.connectionFactory("replica2",
+        (connection, sql, bindings) -> Mono.just(R2dbcStubs.rows(Collections.singletonMap("id", connection))));
+    ReactiveTransactionFactory transactionFactory = R2dbcStubs.transactionFactory(new ArrayList<>());
+    ReactiveEnvironment environment = new ReactiveEnvironment.Builder("test")
+        .transactionFactory(transactionFactory)
+        .connectionFactory(primary)
+        .replicas(slow, fast)
+        .replicaSelector(ReplicaSelector.roundRobin())
+        .build();
+    configuration.setReactiveEnvironment(environment);
+    MappedStatement hedged = select("selectHedged");
+    configuration.getStatementOptions(hedged.getId()).setHedged(true).setHedgeDelay(50);
+    ReactiveExecutor replicated = new SimpleReactiveExecutor(configuration,
+        new ReadWriteSplittingTransaction(transactionFactory.newTransaction(primary, null, true), environment, null));
+
+    StepVerifier.create(replicated.query(hedged, null, RowBounds.DEFAULT, null))
+        .expectNext(Collections.singletonMap("id", "replica2"))
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldEarnHedgeBudgetOncePerSubscription() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    configuration.setHedgeBudget(new HedgeBudget(0.05, 10) {
+      @Override
+      public void onRequest() {
+        requests.incrementAndGet();
+        super.onRequest();
+      }
+    });
+    configuration.setReactiveEnvironment(new ReactiveEnvironment.Builder("test")
+        .transactionFactory(R2dbcStubs.transactionFactory(new ArrayList<>()))
+        .connectionFactory(connectionFactory)
+        .build());
+    MappedStatement hedged = select("selectHedged");
+    configuration.getStatementOptions(hedged.getId()).setHedged(true).setHedgeDelay(50);
+
+    Flux<Object> query = executor.query(hedged, null, RowBounds.DEFAULT, null).take(1);
+    assertEquals(0, requests.get());
+    StepVerifier.create(query).expectNextCount(1).verifyComplete();
+    StepVerifier.create(query).expectNextCount(1).verifyComplete();
+    assertEquals(2, requests.get());
+  }
+
+  @Test
+  void shouldScanRangesOnReplicasInDescendingKeyOrder() throws Exception {
+    ConnectionFactory primary = R2dbcStubs.connectionFactory("primary");
+    ConnectionFactory replica = R2dbcStubs.connectionFactory("replica", (connection, sql, bindings) -> {
+      if (sql.startsWith("SELECT MIN")) {
+        Map<String, Object> bounds = new LinkedHashMap<>();
+        bounds.put("min", 1);
+        bounds.put("max", 4);
+        return Mono.just(R2dbcStubs.rows(bounds));
+      }
+      boolean upperRange = sql.contains(">= ?");
+      return Mono.just(R2dbcStubs.rows(Flux.just(4, 3, 2, 1)
+          .filter(id -> upperRange == id >= (Integer) bindings.get(0))
+          .map(id -> Collections.<String, Object>singletonMap("id", id))));
+    });
+    ReactiveTransactionFactory transactionFactory = R2dbcStubs.transactionFactory(new ArrayList<>());
+    ReactiveEnvironment environment = new ReactiveEnvironment.Builder("test")
+        .transactionFactory(transactionFactory)
+        .connectionFactory(primary)
+        .replicas(replica)
+        .build();
+    configuration.setReactiveEnvironment(environment);
+    MappedStatement scanned = select("selectScanned");
+    configuration.getStatementOptions(scanned.getId())
+        .setPartitionedScan(PartitionedScanPolicy.builder("id").partitions(2).ordered(true).descending(true).build());
+    ReactiveExecutor replicated = new SimpleReactiveExecutor(configuration,
+        new ReadWriteSplittingTransaction(transactionFactory.newTransaction(primary, null, true), environment, null));
+
+    StepVerifier.create(replicated.<Map<String, Object>>query(scanned, null, RowBounds.DEFAULT, null).map(row -> row.get("id")))
+        .expectNext(4, 3, 2, 1)
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldScatterSelectOverShardsWhileSessionCommitsAutomatically() throws Exception {
+    List<String> calls = new CopyOnWriteArrayList<>();
+    AtomicBoolean autoCommit = new AtomicBoolean(true);
+    ReactiveTransactionFactory transactionFactory = R2dbcStubs.transactionFactory(calls);
+    ConnectionFactory primary = R2dbcStubs.connectionFactory("primary");
+    ReactiveEnvironment environment = new ReactiveEnvironment.Builder("test")
+        .transactionFactory(transactionFactory)
+        .connectionFactory(primary)
+        .shards(shard("shard0", 1, 4), shard("shard1", 2, 3))
+        .build();
+    configuration.setReactiveEnvironment(environment);
+    MappedStatement scattered = select("selectScattered");
+    configuration.getStatementOptions(scattered.getId()).setScatterGather(ScatterGatherPolicy.builder().orderBy("id").build());
+    ReactiveTransaction delegate = transactionFactory.newTransaction(primary, null, false);
+    ReactiveTransaction primaryTransaction = (ReactiveTransaction) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class[] {ReactiveTransaction.class},
+        (proxy, method, args) -> method.getName().equals("isAutoCommit") ? Mono.fromSupplier(autoCommit::get) : method.invoke(delegate, args));
+    ShardingTransaction transaction = new ShardingTransaction(primaryTransaction, environment, null);
+    ReactiveExecutor sharded = new SimpleReactiveExecutor(configuration, transaction);
+
+    StepVerifier.create(sharded.<Map<String, Object>>query(scattered, null, RowBounds.DEFAULT, null).map(row -> row.get("id")))
+        .expectNext(1, 2, 3, 4)
+        .verifyComplete();
+    StepVerifier.create(transaction.close()).verifyComplete();
+    assertEquals(Arrays.asList("shard0.close", "shard1.close"), calls);
+
+    // a transaction the session joined later cannot span the shards
+    autoCommit.set(false);
+    StepVerifier.create(sharded.query(scattered, null, RowBounds.DEFAULT, null))
+        .thenConsumeWhile(row -> true)
+        .verifyError(ReactiveMybatisException.class);
+  }
+
+  private ConnectionFactory shard(String name, int... ids) {
+    return R2dbcStubs.connectionFactory(name, (connection, sql, bindings) -> Mono.just(R2dbcStubs.rows(
+        Flux.fromArray(Arrays.stream(ids).boxed().toArray(Integer[]::new)).map(id -> Collections.<String, Object>singletonMap("id", id)))));
+  }
+
+  private MappedStatement select(String id) {
+    ResultMap resultMap = new ResultMap.Builder(configuration, id + "-Inline", HashMap.class, new ArrayList<>()).build();
+    MappedStatement ms = new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, "select * from users"),
+        SqlCommandType.SELECT).resultMaps(Collections.singletonList(resultMap)).build();
+    configuration.addMappedStatement(ms);
+    return ms;
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.executor.statement;
+
+import io.r2dbc.spi.R2dbcTimeoutException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementUtilTest {
+
+  @Test
+  void shouldApplySmallestTimeout() {
+    assertEquals(5, StatementUtil.applyTransactionTimeout(10, 5));
+    assertEquals(5, StatementUtil.applyTransactionTimeout(5, 10));
+    assertEquals(10, StatementUtil.applyTransactionTimeout(null, 10));
+    assertEquals(10, StatementUtil.applyTransactionTimeout(0, 10));
+    assertEquals(5, StatementUtil.applyTransactionTimeout(5, 0));
+    assertNull(StatementUtil.applyTransactionTimeout(null, null));
+  }
+
+  @Test
+  void shouldCancelExecutionOnTimeout() {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    StepVerifier.withVirtualTime(() -> StatementUtil.applyTimeout(
+        Flux.interval(Duration.ofMillis(1200)).doOnCancel(() -> cancelled.set(true)), 1, "select 1"))
+        .expectSubscription()
+        .thenAwait(Duration.ofSeconds(1))
+        .expectError(R2dbcTimeoutException.class)
+        .verify();
+    assertTrue(cancelled.get());
+  }
+
+  @Test
+  void shouldNotLimitReadingAfterFirstResult() {
+    StepVerifier.withVirtualTime(() -> StatementUtil.applyTimeout(
+        Mono.delay(Duration.ofMillis(400)).thenMany(Flux.range(0, 5)), 1, "select 1"), 0)
+        .expectSubscription()
+        .thenRequest(1)
+        .thenAwait(Duration.ofMillis(400))
+        .expectNext(0)
+        .thenAwait(Duration.ofSeconds(5))
+        .thenRequest(4)
+        .expectNext(1, 2, 3, 4)
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldCompleteWithinTimeout() {
+    StepVerifier.withVirtualTime(() -> StatementUtil.applyTimeout(Flux.just(1, 2), 1, "select 1"))
+        .expectNext(1, 2)
+        .verifyComplete();
+    StepVerifier.withVirtualTime(() -> StatementUtil.applyTimeout(Mono.never(), 1, "update t"))
+        .expectSubscription()
+        .thenAwait(Duration.ofSeconds(1))
+        .expectError(R2dbcTimeoutException.class)
+        .verify();
+  }
+
+}
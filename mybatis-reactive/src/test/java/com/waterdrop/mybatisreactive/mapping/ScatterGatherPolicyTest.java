@@ -0,0 +1,122 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.mapping;
+
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScatterGatherPolicyTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final MappedStatement ms = new MappedStatement.Builder(configuration, "users.search",
+      new StaticSqlSource(configuration, "sql"), SqlCommandType.SELECT).build();
+
+  @Test
+  void shouldMergeSortedShardsAndApplyRowBoundsGlobally() {
+    ScatterGatherPolicy policy = ScatterGatherPolicy.builder().orderBy("age DESC, id").build();
+    RowBounds rowBounds = new RowBounds(1, 3);
+    List<Flux<Map<String, Object>>> shards = Arrays.asList(
+        Flux.just(user(1, 40), user(4, 30), user(6, 20)),
+        Flux.just(user(2, 40), user(3, 35), user(5, 30)));
+
+    assertEquals(4, policy.getShardRowBounds(rowBounds).getLimit());
+    StepVerifier.create(policy.gather(ms, shards, rowBounds, null).map(user -> user.get("id")))
+        .expectNext(2, 3, 4)
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldCombineAggregates() {
+    StepVerifier.create(ScatterGatherPolicy.builder().aggregate(ScatterGatherPolicy.Aggregate.COUNT).build()
+        .gather(ms, Arrays.asList(Flux.just(3L), Flux.just(4L)), RowBounds.DEFAULT, null))
+        .expectNext(7L)
+        .verifyComplete();
+    StepVerifier.create(ScatterGatherPolicy.builder().aggregate(ScatterGatherPolicy.Aggregate.MAX).build()
+        .gather(ms, Arrays.asList(Flux.just(3), Flux.just(9), Flux.just(4)), RowBounds.DEFAULT, null))
+        .expectNext(9)
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldWidenSumsOfMixedIntegerTypes() {
+    ScatterGatherPolicy count = ScatterGatherPolicy.builder().aggregate(ScatterGatherPolicy.Aggregate.COUNT).build();
+
+    StepVerifier.create(count.gather(ms, Arrays.asList(Flux.<Number>just(3), Flux.<Number>just(5_000_000_000L)), RowBounds.DEFAULT, null))
+        .expectNext(5_000_000_003L)
+        .verifyComplete();
+    StepVerifier.create(count.gather(ms, Arrays.asList(Flux.<Number>just(Integer.MAX_VALUE), Flux.<Number>just(1)), RowBounds.DEFAULT, null))
+        .expectNext(2_147_483_648L)
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldGatherShardAwareRowBounds() {
+    CountingRowBounds rowBounds = new CountingRowBounds(2, 2);
+    List<RowBounds> shardRowBounds = new ArrayList<>();
+    List<Flux<Integer>> shards = new ArrayList<>();
+    for (int shard = 0; shard < 2; shard++) {
+      CountingRowBounds bounds = (CountingRowBounds) ScatterGatherPolicy.builder().build().getShardRowBounds(rowBounds);
+      bounds.total = 10;
+      shardRowBounds.add(bounds);
+      shards.add(Flux.range(shard * 100, bounds.getLimit()));
+    }
+
+    StepVerifier.create(ScatterGatherPolicy.builder().build().gather(ms, shards, rowBounds, shardRowBounds).count())
+        .expectNext(2L)
+        .verifyComplete();
+    assertEquals(20, rowBounds.total);
+  }
+
+  private Map<String, Object> user(int id, int age) {
+    Map<String, Object> user = new HashMap<>();
+    user.put("id", id);
+    user.put("age", age);
+    return user;
+  }
+
+  private static class CountingRowBounds extends RowBounds implements ShardAwareRowBounds {
+    private long total;
+
+    CountingRowBounds(int offset, int limit) {
+      super(offset, limit);
+    }
+
+    @Override
+    public RowBounds forShard() {
+      return new CountingRowBounds(0, getOffset() + getLimit());
+    }
+
+    @Override
+    public void gather(List<RowBounds> shardRowBounds) {
+      total = shardRowBounds.stream().mapToLong(bounds -> ((CountingRowBounds) bounds).total).sum();
+    }
+  }
+
+}
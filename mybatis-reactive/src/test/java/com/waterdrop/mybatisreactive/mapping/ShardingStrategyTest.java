@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.mapping;
+
+import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardingStrategyTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final MappedStatement ms = new MappedStatement.Builder(configuration, "users.select",
+      new StaticSqlSource(configuration, "sql"), SqlCommandType.SELECT).build();
+  private final ShardingStrategy hash = ShardingStrategy.hash("tenantId");
+
+  @Test
+  void shouldHashEqualKeysToTheSameShard() {
+    int shard = hash.getShard(ms, 12345, 7);
+
+    assertEquals(shard, hash.getShard(ms, 12345L, 7));
+    assertEquals(shard, hash.getShard(ms, new BigDecimal("12345.00"), 7));
+    assertEquals(shard, hash.getShard(ms, "12345", 7));
+    assertEquals(shard, hash.getShard(ms, Collections.singletonMap("tenantId", new StringBuilder("12345")), 7));
+    assertEquals("12345".hashCode() % 7, shard);
+  }
+
+  @Test
+  void shouldHashEqualFloatingPointKeysToTheSameShard() {
+    int shard = hash.getShard(ms, 5L, 7);
+
+    assertEquals(shard, hash.getShard(ms, 5.0d, 7));
+    assertEquals(shard, hash.getShard(ms, 5.0f, 7));
+    assertEquals(shard, hash.getShard(ms, new BigDecimal("5.0"), 7));
+    assertEquals(hash.getShard(ms, new BigDecimal("0.1"), 7), hash.getShard(ms, 0.1f, 7));
+  }
+
+  @Test
+  void shouldHashUuidByItsText() {
+    UUID tenant = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+
+    assertEquals(Math.floorMod(tenant.toString().hashCode(), 5), hash.getShard(ms, Collections.singletonMap("tenantId", tenant), 5));
+  }
+
+  @Test
+  void shouldRejectKeysWithoutCanonicalText() {
+    assertThrows(ReactiveMybatisException.class, () -> hash.getShard(ms, Collections.singletonMap("tenantId", new Object()), 3));
+    assertThrows(ReactiveMybatisException.class, () -> hash.getShard(ms, Collections.singletonMap("tenantId", new Date()), 3));
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+  @Test
+  void shouldEstimatePercentileWithinBucketResolution() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    Duration p95 = histogram.getPercentile(0.95);
+    assertTrue(p95.toMillis() >= 95 && p95.toMillis() <= 95 * 1.2, "p95 was " + p95);
+    Duration p50 = histogram.getPercentile(0.5);
+    assertTrue(p50.toMillis() >= 50 && p50.toMillis() <= 50 * 1.2, "p50 was " + p50);
+  }
+
+  @Test
+  void shouldMapEveryValueBelowItsBucketBound() {
+    for (long micros = 1; micros < 1 << 20; micros = micros * 3 / 2 + 1) {
+      assertTrue(micros <= LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(micros)), "micros " + micros);
+    }
+  }
+
+  @Test
+  void shouldReturnZeroWithoutSamples() {
+    assertEquals(Duration.ZERO, new LatencyHistogram().getPercentile(0.99));
+  }
+
+}
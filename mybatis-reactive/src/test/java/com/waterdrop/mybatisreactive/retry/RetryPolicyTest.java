@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.retry;
+
+import io.r2dbc.spi.R2dbcBadGrammarException;
+import io.r2dbc.spi.R2dbcNonTransientResourceException;
+import io.r2dbc.spi.R2dbcRollbackException;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import io.r2dbc.spi.R2dbcTransientResourceException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+  private final RetryPolicy policy = RetryPolicy.builder()
+      .maxAttempts(3)
+      .minBackoff(Duration.ofMillis(1))
+      .maxBackoff(Duration.ofMillis(5))
+      .build();
+
+  @Test
+  void shouldRetryTransientErrorOnNewAttempt() {
+    AtomicInteger attempts = new AtomicInteger();
+    AtomicInteger releases = new AtomicInteger();
+    Flux<String> execution = Flux.defer(() -> attempts.incrementAndGet() < 3
+        ? Flux.error(new R2dbcTransientResourceException("connection reset"))
+        : Flux.just("row"));
+
+    StepVerifier.create(policy.apply(execution, () -> Mono.fromRunnable(releases::incrementAndGet)))
+        .expectNext("row")
+        .verifyComplete();
+    assertEquals(3, attempts.get());
+    assertEquals(2, releases.get());
+  }
+
+  @Test
+  void shouldGiveUpWithOriginalErrorAfterMaxAttempts() {
+    AtomicInteger attempts = new AtomicInteger();
+    Flux<String> execution = Flux.defer(() -> {
+      attempts.incrementAndGet();
+      return Flux.error(new R2dbcTransientResourceException("connection reset"));
+    });
+
+    StepVerifier.create(policy.apply(execution, Mono::empty))
+        .expectError(R2dbcTransientResourceException.class)
+        .verify();
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  void shouldNotRetryOnceRowsWereEmitted() {
+    AtomicInteger attempts = new AtomicInteger();
+    Flux<String> execution = Flux.defer(() -> {
+      attempts.incrementAndGet();
+      return Flux.just("row").concatWith(Flux.error(new R2dbcTransientResourceException("connection reset")));
+    });
+
+    StepVerifier.create(policy.apply(execution, Mono::empty))
+        .expectNext("row")
+        .expectError(R2dbcTransientResourceException.class)
+        .verify();
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  void shouldNotRetryTimeoutsOrPermanentErrors() {
+    AtomicInteger attempts = new AtomicInteger();
+    StepVerifier.create(policy.apply(Flux.defer(() -> {
+      attempts.incrementAndGet();
+      return Flux.error(new R2dbcTimeoutException("timed out"));
+    }), Mono::empty)).expectError(R2dbcTimeoutException.class).verify();
+    StepVerifier.create(policy.apply(Flux.defer(() -> {
+      attempts.incrementAndGet();
+      return Flux.error(new R2dbcBadGrammarException("syntax error"));
+    }), Mono::empty)).expectError(R2dbcBadGrammarException.class).verify();
+    assertEquals(2, attempts.get());
+  }
+
+  @Test
+  void shouldRetryTransactionsOnRollbackSqlStateAndErrorCode() {
+    RetryPolicy transactions = RetryPolicy.forTransactions().build();
+
+    assertTrue(transactions.isRetryable(new R2dbcRollbackException("could not serialize access")));
+    assertTrue(transactions.isRetryable(new R2dbcNonTransientResourceException("deadlock detected", "40P01")));
+    assertTrue(transactions.isRetryable(new IllegalStateException(new R2dbcNonTransientResourceException("Deadlock found", "HY000", 1213))));
+    assertFalse(transactions.isRetryable(new R2dbcTransientResourceException("connection reset")));
+    assertFalse(transactions.isRetryable(new R2dbcBadGrammarException("syntax error", "42601")));
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.session.defaults;
+
+import com.waterdrop.mybatisreactive.executor.ReactiveExecutor;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.session.ReactiveResultHandler;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DefaultReactiveSqlSessionTest {
+
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicBoolean cancelled = new AtomicBoolean();
+
+  @Test
+  void shouldStopReadingAtSecondRow() {
+    DefaultReactiveSqlSession session = session(Flux.range(1, 1_000_000));
+
+    StepVerifier.create(session.selectOne("selectUser"))
+        .expectError(TooManyResultsException.class)
+        .verify();
+    assertEquals(2, requested.get());
+    assertTrue(cancelled.get());
+  }
+
+  @Test
+  void shouldReturnSingleRowOrEmpty() {
+    StepVerifier.create(session(Flux.just(1)).selectOne("selectUser")).expectNext(1).verifyComplete();
+    StepVerifier.create(session(Flux.empty()).selectOne("selectUser")).verifyComplete();
+  }
+
+  @Test
+  void shouldHandOneRowAtATimeToResultHandler() {
+    List<Integer> handled = new ArrayList<>();
+    AtomicInteger inFlight = new AtomicInteger();
+    ReactiveResultHandler<Integer> handler = row -> {
+      assertEquals(1, inFlight.incrementAndGet());
+      return Mono.delay(Duration.ofMillis(1)).then(Mono.fromRunnable(() -> {
+        handled.add(row);
+        inFlight.decrementAndGet();
+      }));
+    };
+
+    StepVerifier.create(session(Flux.range(1, 5)).select("selectUser", handler)).verifyComplete();
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), handled);
+  }
+
+  @Test
+  void shouldCancelSelectWhenResultHandlerStops() {
+    List<Integer> handled = new ArrayList<>();
+    ResultHandler<Integer> handler = context -> {
+      handled.add(context.getResultObject());
+      if (context.getResultCount() == 3) {
+        context.stop();
+      }
+    };
+
+    StepVerifier.create(session(Flux.range(1, 1_000_000)).select("selectUser", ReactiveResultHandler.of(handler)))
+        .verifyComplete();
+    assertEquals(Arrays.asList(1, 2, 3), handled);
+    assertTrue(cancelled.get());
+  }
+
+  @Test
+  void shouldKeySelectMapByProperty() {
+    ReactiveConfiguration configuration = new ReactiveConfiguration();
+    Flux<Map<String, Object>> rows = Flux.range(1, 3).map(id -> {
+      Map<String, Object> row = new HashMap<>();
+      row.put("id", id);
+      row.put("name", "user" + id);
+      return row;
+    });
+
+    StepVerifier.create(session(configuration, rows).<Integer, Map<String, Object>>selectMap("selectUser", "id"))
+        .assertNext(users -> {
+          assertEquals(3, users.size());
+          assertEquals("user2", users.get(2).get("name"));
+        })
+        .verifyComplete();
+    assertEquals(3, configuration.getStatementMetrics().getStats("selectUser").getLastResultSize());
+  }
+
+  @Test
+  void shouldWrapUnknownStatementOfSelectMap() {
+    PersistenceException e = assertThrows(PersistenceException.class, () -> session(Flux.empty()).selectMap("selectNobody", "id"));
+    assertTrue(e.getCause() instanceof IllegalArgumentException);
+  }
+
+  private DefaultReactiveSqlSession session(Flux<?> rows) {
+    return session(new ReactiveConfiguration(), rows);
+  }
+
+  private DefaultReactiveSqlSession session(ReactiveConfiguration configuration, Flux<?> rows) {
+    configuration.addMappedStatement(new MappedStatement.Builder(configuration, "selectUser",
+        new StaticSqlSource(configuration, "select * from users"), SqlCommandType.SELECT).build());
+    Flux<?> tracked = rows.doOnRequest(requested::addAndGet).doOnCancel(() -> cancelled.set(true));
+    ReactiveExecutor executor = (ReactiveExecutor) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class[] {ReactiveExecutor.class}, (proxy, method, args) -> {
+          if (method.getName().startsWith("query")) {
+            return tracked;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+    return new DefaultReactiveSqlSession(configuration, executor);
+  }
+
+}
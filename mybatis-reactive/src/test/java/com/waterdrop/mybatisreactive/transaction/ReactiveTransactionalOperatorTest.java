@@ -0,0 +1,168 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.transaction;
+
+import com.waterdrop.mybatisreactive.R2dbcStubs;
+import com.waterdrop.mybatisreactive.metrics.FailedStatement;
+import com.waterdrop.mybatisreactive.retry.RetryPolicy;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import com.waterdrop.mybatisreactive.session.ReactiveSqlSession;
+import com.waterdrop.mybatisreactive.session.ReactiveSqlSessionFactory;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.R2dbcRollbackException;
+import org.apache.ibatis.annotations.Select;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactiveTransactionalOperatorTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+
+  interface NameMapper {
+    @Select("select name from users")
+    Mono<String> selectName();
+  }
+
+  @Test
+  void shouldRunMapperCallsOnBoundSessionAndCommit() {
+    configuration.addMapper(NameMapper.class);
+    NameMapper mapper = configuration.getMapper(NameMapper.class, session("plain"));
+    ReactiveTransactionalOperator operator = ReactiveTransactionalOperator.builder(sessionFactory()).build();
+
+    StepVerifier.create(mapper.selectName()).expectNext("plain").verifyComplete();
+    StepVerifier.create(operator.transactional(mapper.selectName().flatMap(first -> mapper.selectName().map(second -> first + second))))
+        .expectNext("txtx")
+        .verifyComplete();
+    assertEquals(1, calls.stream().filter("openSession"::equals).count());
+    assertEquals("tx.commit", calls.get(calls.size() - 2));
+    assertEquals("tx.close", calls.get(calls.size() - 1));
+  }
+
+  @Test
+  void shouldRollbackOnErrorAndJoinEnclosingTransaction() {
+    ReactiveTransactionalOperator operator = ReactiveTransactionalOperator.builder(sessionFactory()).build();
+
+    StepVerifier.create(operator.transactional(operator.transactional(Mono.error(new IllegalStateException("boom")))))
+        .expectError(IllegalStateException.class)
+        .verify();
+    assertEquals(1, calls.stream().filter("openSession"::equals).count());
+    assertTrue(calls.contains("tx.rollback"));
+    assertEquals("tx.close", calls.get(calls.size() - 1));
+  }
+
+  @Test
+  void shouldRollbackFailedUnitToSavepointAndCommitTheRest() {
+    ReactiveTransactionalOperator operator = ReactiveTransactionalOperator.builder(sessionFactory()).build();
+
+    StepVerifier.create(operator.execute(session -> Flux.range(1, 3)
+        .concatMap(i -> operator.nested(i == 2 ? Mono.<Integer>error(new IllegalStateException("bad record")) : Mono.just(i))
+            .onErrorResume(e -> Mono.empty()))))
+        .expectNext(1, 3)
+        .verifyComplete();
+    assertEquals(3, calls.stream().filter("tx.createSavepoint"::equals).count());
+    assertEquals(2, calls.stream().filter("tx.releaseSavepoint"::equals).count());
+    assertEquals(1, calls.stream().filter("tx.rollbackToSavepoint"::equals).count());
+    assertTrue(calls.contains("tx.commit"));
+  }
+
+  @Test
+  void shouldRunWholeUnitAgainAfterSerializationFailure() {
+    AtomicInteger attempts = new AtomicInteger();
+    ReactiveTransactionalOperator operator = ReactiveTransactionalOperator.builder(sessionFactory())
+        .retryPolicy(RetryPolicy.forTransactions().minBackoff(Duration.ofMillis(1)).build())
+        .build();
+
+    StepVerifier.create(operator.execute(session -> Flux.deferContextual(context -> {
+      if (attempts.incrementAndGet() == 1) {
+        FailedStatement.mark(context, "users.update");
+        return Flux.just(1).concatWith(Flux.error(new R2dbcRollbackException("could not serialize access")));
+      }
+      return Flux.just(1, 2);
+    })))
+        .expectNext(1, 2)
+        .verifyComplete();
+    assertEquals(2, calls.stream().filter("openSession"::equals).count());
+    assertEquals(1, calls.stream().filter("tx.rollback"::equals).count());
+    assertEquals(1, calls.stream().filter("tx.commit"::equals).count());
+    assertEquals(1, configuration.getStatementMetrics().getStats("users.update").getTransactionRetries());
+  }
+
+  @Test
+  void shouldMarkTransactionReadOnlyOnceItBegan() {
+    ReactiveTransactionalOperator operator = ReactiveTransactionalOperator.builder(sessionFactory()).readOnly(true).build();
+
+    StepVerifier.create(operator.transactional(Mono.just(1))).expectNext(1).verifyComplete();
+    assertEquals(Arrays.asList("openSession", "tx.getConnection", "tx.beginTransaction", "SET TRANSACTION READ ONLY",
+        "tx.commit", "tx.close"), calls);
+  }
+
+  private ReactiveSqlSessionFactory sessionFactory() {
+    return (ReactiveSqlSessionFactory) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ReactiveSqlSessionFactory.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("getConfiguration")) {
+            return configuration;
+          }
+          calls.add(method.getName());
+          return session("tx");
+        });
+  }
+
+  private ReactiveSqlSession session(String name) {
+    return (ReactiveSqlSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ReactiveSqlSession.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getConfiguration":
+              return configuration;
+            case "selectOne":
+              return Mono.just(name);
+            case "getConnection":
+              calls.add(name + "." + method.getName());
+              return Mono.just(connection(name));
+            default:
+              calls.add(name + "." + method.getName());
+              return Mono.empty();
+          }
+        });
+  }
+
+  private Connection connection(String name) {
+    Connection connection = R2dbcStubs.connection(name, (c, sql, bindings) -> {
+      calls.add(sql);
+      return Mono.just(R2dbcStubs.rowsUpdated(0));
+    });
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("beginTransaction")) {
+            calls.add(name + "." + method.getName());
+          }
+          return method.invoke(connection, args);
+        });
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.transaction;
+
+import com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment;
+import com.waterdrop.mybatisreactive.mapping.ReplicaSelector;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.waterdrop.mybatisreactive.R2dbcStubs.connectionFactory;
+import static com.waterdrop.mybatisreactive.R2dbcStubs.transactionFactory;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadWriteSplittingTransactionTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+  private final ConnectionFactory primary = connectionFactory("primary");
+  private final ConnectionFactory replica1 = connectionFactory("replica1");
+  private final ConnectionFactory replica2 = connectionFactory("replica2");
+  private final MappedStatement select = statement("select", SqlCommandType.SELECT);
+  private final MappedStatement update = statement("update", SqlCommandType.UPDATE);
+
+  @Test
+  void shouldReadFromReplicasUntilSessionWrites() {
+    ReadWriteSplittingTransaction transaction = transaction(ReplicaSelector.roundRobin(), new AtomicBoolean(true));
+
+    assertEquals("replica1", connectionOf(transaction, select));
+    assertEquals("replica1", connectionOf(transaction, select));
+    transaction.releaseConnection().block();
+    assertEquals("replica2", connectionOf(transaction, select));
+    assertEquals("primary", connectionOf(transaction, update));
+    assertEquals("primary", connectionOf(transaction, select));
+  }
+
+  @Test
+  void shouldReadFromReplicaInTransactionOnlyWhenReadOnly() {
+    ReplicaSelector.LeastInFlight selector = (ReplicaSelector.LeastInFlight) ReplicaSelector.leastInFlight();
+    ReadWriteSplittingTransaction first = transaction(selector, new AtomicBoolean(false));
+    ReadWriteSplittingTransaction second = transaction(selector, new AtomicBoolean(false));
+    MappedStatement readOnly = statement("readOnly", SqlCommandType.SELECT);
+    configuration.getStatementOptions(readOnly.getId()).setReadOnly(true);
+
+    assertEquals("primary", connectionOf(first, select));
+    assertEquals("replica1", connectionOf(first, readOnly));
+    assertEquals("replica2", connectionOf(second, readOnly));
+    assertEquals(1, selector.getInFlight(replica1));
+    first.close().block();
+    assertEquals(0, selector.getInFlight(replica1));
+    assertEquals(1, selector.getInFlight(replica2));
+  }
+
+  @Test
+  void shouldEndReplicaWhenPrimaryFailsToClose() {
+    ReplicaSelector.LeastInFlight selector = (ReplicaSelector.LeastInFlight) ReplicaSelector.leastInFlight();
+    ReadWriteSplittingTransaction transaction = transaction(selector, new AtomicBoolean(true), true);
+
+    assertEquals("replica1", connectionOf(transaction, select));
+    StepVerifier.create(transaction.releaseConnection()).verifyErrorMessage("primary.releaseConnection");
+    assertEquals(0, selector.getInFlight(replica1));
+    assertEquals("replica1", connectionOf(transaction, select));
+    StepVerifier.create(transaction.close()).verifyErrorMessage("primary.close");
+    assertEquals(0, selector.getInFlight(replica1));
+    assertTrue(calls.contains("replica1.close"));
+  }
+
+  @Test
+  void shouldFollowAutoCommitOfPrimaryWhenStatementRuns() {
+    AtomicBoolean autoCommit = new AtomicBoolean(false);
+    ReadWriteSplittingTransaction transaction = transaction(ReplicaSelector.roundRobin(), autoCommit);
+
+    assertEquals("primary", connectionOf(transaction, select));
+    autoCommit.set(true);
+    assertEquals("replica1", connectionOf(transaction, select));
+  }
+
+  @Test
+  void shouldTakeReadConnectionFromSelector() {
+    ReplicaSelector.LeastInFlight selector = (ReplicaSelector.LeastInFlight) ReplicaSelector.leastInFlight();
+    ReadWriteSplittingTransaction transaction = transaction(selector, new AtomicBoolean(true));
+
+    StepVerifier.create(transaction.usingReadConnection(select, connection -> {
+      assertEquals(1, selector.getInFlight(replica1));
+      return Mono.just(connection.toString());
+    })).expectNext("replica1").verifyComplete();
+    assertEquals(0, selector.getInFlight(replica1));
+    connectionOf(transaction, update);
+    StepVerifier.create(transaction.usingReadConnection(select, connection -> Mono.just(connection.toString())))
+        .expectNext("primary")
+        .verifyComplete();
+  }
+
+  private ReadWriteSplittingTransaction transaction(ReplicaSelector selector, AtomicBoolean autoCommit) {
+    return transaction(selector, autoCommit, false);
+  }
+
+  private ReadWriteSplittingTransaction transaction(ReplicaSelector selector, AtomicBoolean autoCommit, boolean primaryFailsToEnd) {
+    ReactiveEnvironment environment = new ReactiveEnvironment.Builder("test")
+        .transactionFactory(transactionFactory(calls))
+        .connectionFactory(primary)
+        .replicas(replica1, replica2)
+        .replicaSelector(selector)
+        .build();
+    ReactiveTransaction delegate = transactionFactory(calls).newTransaction(primary, null, false);
+    // a transaction manager may change the autocommit of the primary during the session
+    ReactiveTransaction primaryTransaction = (ReactiveTransaction) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class[] {ReactiveTransaction.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("isAutoCommit")) {
+            return Mono.fromSupplier(autoCommit::get);
+          }
+          if (primaryFailsToEnd && (method.getName().equals("close") || method.getName().equals("releaseConnection"))) {
+            return Mono.error(new IllegalStateException("primary." + method.getName()));
+          }
+          return method.invoke(delegate, args);
+        });
+    return new ReadWriteSplittingTransaction(primaryTransaction, environment, null);
+  }
+
+  private String connectionOf(ReactiveTransaction transaction, MappedStatement ms) {
+    return transaction.getConnection(ms, null).block().toString();
+  }
+
+  private MappedStatement statement(String id, SqlCommandType type) {
+    return new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, "sql"), type).build();
+  }
+
+}
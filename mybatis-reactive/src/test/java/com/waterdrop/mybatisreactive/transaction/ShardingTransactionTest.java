@@ -0,0 +1,119 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.transaction;
+
+import com.waterdrop.mybatisreactive.exception.ReactiveMybatisException;
+import com.waterdrop.mybatisreactive.mapping.ReactiveEnvironment;
+import com.waterdrop.mybatisreactive.mapping.ShardingStrategy;
+import com.waterdrop.mybatisreactive.session.ReactiveConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.waterdrop.mybatisreactive.R2dbcStubs.connectionFactory;
+import static com.waterdrop.mybatisreactive.R2dbcStubs.transactionFactory;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShardingTransactionTest {
+
+  private final ReactiveConfiguration configuration = new ReactiveConfiguration();
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+  private final ConnectionFactory primary = connectionFactory("primary");
+  private final ReactiveEnvironment environment = new ReactiveEnvironment.Builder("test")
+      .transactionFactory(transactionFactory(calls))
+      .connectionFactory(primary)
+      .shards(connectionFactory("shard0"), connectionFactory("shard1"), connectionFactory("shard2"))
+      .build();
+
+  @Test
+  void shouldRouteStatementsByNamespaceAndStatementStrategy() {
+    configuration.setShardingStrategy("users", ShardingStrategy.hash("tenantId"));
+    configuration.setShardingStrategy("users.selectByRange", ShardingStrategy.range("id", 100, 200));
+    ShardingTransaction transaction = transaction(new AtomicBoolean(true));
+
+    assertEquals("shard1", connectionOf(transaction, statement("users.selectByTenant"), Collections.singletonMap("tenantId", 4)));
+    assertEquals("shard2", connectionOf(transaction, statement("users.selectByTenant"), Collections.singletonMap("tenantId", 5)));
+    assertEquals("shard0", connectionOf(transaction, statement("users.selectByRange"), 99L));
+    assertEquals("shard2", connectionOf(transaction, statement("users.selectByRange"), 250L));
+    assertEquals("primary", connectionOf(transaction, statement("countries.selectAll"), null));
+  }
+
+  @Test
+  void shouldKeepTransactionOnOneShard() {
+    configuration.setShardingStrategy("users", ShardingStrategy.hash("tenantId"));
+    ShardingTransaction transaction = transaction(new AtomicBoolean(false));
+    MappedStatement insert = statement("users.insert");
+
+    assertEquals("shard1", connectionOf(transaction, insert, Collections.singletonMap("tenantId", 1)));
+    StepVerifier.create(transaction.getConnection(insert, Collections.singletonMap("tenantId", 2)))
+        .expectError(ReactiveMybatisException.class)
+        .verify();
+    StepVerifier.create(transaction.commit().then(transaction.close())).verifyComplete();
+    assertEquals(Arrays.asList("shard1.commit", "shard1.close"), calls);
+  }
+
+  @Test
+  void shouldFollowAutoCommitOfPrimaryWhenStatementRuns() {
+    configuration.setShardingStrategy("users", ShardingStrategy.hash("tenantId"));
+    AtomicBoolean autoCommit = new AtomicBoolean(true);
+    ShardingTransaction transaction = transaction(autoCommit);
+    MappedStatement insert = statement("users.insert");
+
+    assertEquals("shard1", connectionOf(transaction, insert, Collections.singletonMap("tenantId", 1)));
+    autoCommit.set(false);
+    StepVerifier.create(transaction.getConnection(insert, Collections.singletonMap("tenantId", 2)))
+        .expectError(ReactiveMybatisException.class)
+        .verify();
+  }
+
+  @Test
+  void shouldCommitAndCloseThePrimaryConnectionOfTheSession() {
+    ShardingTransaction transaction = transaction(new AtomicBoolean(false));
+
+    StepVerifier.create(transaction.getConnection().map(Object::toString)).expectNext("primary").verifyComplete();
+    StepVerifier.create(transaction.commit().then(transaction.close())).verifyComplete();
+    assertEquals(Arrays.asList("primary.commit", "primary.close"), calls);
+  }
+
+  private ShardingTransaction transaction(AtomicBoolean autoCommit) {
+    ReactiveTransaction delegate = transactionFactory(calls).newTransaction(primary, null, false);
+    // a transaction manager may change the autocommit of the primary during the session
+    ReactiveTransaction primaryTransaction = (ReactiveTransaction) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class[] {ReactiveTransaction.class},
+        (proxy, method, args) -> method.getName().equals("isAutoCommit") ? Mono.fromSupplier(autoCommit::get) : method.invoke(delegate, args));
+    return new ShardingTransaction(primaryTransaction, environment, null);
+  }
+
+  private String connectionOf(ReactiveTransaction transaction, MappedStatement ms, Object parameter) {
+    return transaction.getConnection(ms, parameter).block().toString();
+  }
+
+  private MappedStatement statement(String id) {
+    return new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, "sql"), SqlCommandType.SELECT).build();
+  }
+
+}
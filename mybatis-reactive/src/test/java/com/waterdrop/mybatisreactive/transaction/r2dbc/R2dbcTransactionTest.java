@@ -0,0 +1,169 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.waterdrop.mybatisreactive.transaction.r2dbc;
+
+import com.waterdrop.mybatisreactive.transaction.ConnectionScope;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.IsolationLevel;
+import io.r2dbc.spi.Wrapped;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class R2dbcTransactionTest {
+
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+  private final AtomicInteger acquisitions = new AtomicInteger();
+  private boolean autoCommit = true;
+  private IsolationLevel isolationLevel = IsolationLevel.READ_COMMITTED;
+
+  @Test
+  void shouldAcquireOneConnectionForConcurrentStatements() {
+    R2dbcTransaction transaction = new R2dbcTransaction(pool(physicalConnection()), TransactionIsolationLevel.READ_COMMITTED, false);
+
+    StepVerifier.create(Flux.range(0, 16)
+        .flatMap(i -> transaction.getConnection().subscribeOn(Schedulers.parallel()))
+        .distinct()
+        .count())
+        .expectNext(1L)
+        .verifyComplete();
+    StepVerifier.create(transaction.getConnection().then(Mono.defer(transaction::close))).verifyComplete();
+    assertEquals(1, acquisitions.get());
+  }
+
+  @Test
+  void shouldAcquireAgainAfterRelease() {
+    R2dbcTransaction transaction = new R2dbcTransaction(pool(physicalConnection()), null, true);
+
+    StepVerifier.create(transaction.getConnection().then(Mono.defer(transaction::releaseConnection))
+        .then(Mono.defer(transaction::getConnection))).expectNextCount(1).verifyComplete();
+    assertEquals(2, acquisitions.get());
+  }
+
+  @Test
+  void shouldBorrowConnectionOfScope() {
+    ConnectionFactory pool = pool(physicalConnection());
+
+    StepVerifier.create(ConnectionScope.withConnection(pool, connection -> Flux.range(0, 3).concatMap(i -> {
+      R2dbcTransaction transaction = new R2dbcTransaction(pool, null, true);
+      return transaction.getConnection()
+          .doOnNext(c -> assertSame(connection, c))
+          .then(Mono.defer(transaction::close))
+          .then(Mono.fromRunnable(() -> assertEquals(0, calls.stream().filter("leaseClose"::equals).count())));
+    }))).verifyComplete();
+    assertEquals(1, acquisitions.get());
+    assertEquals(1, calls.stream().filter("leaseClose"::equals).count());
+  }
+
+  @Test
+  void shouldLeaveBorrowedConnectionAsItIs() {
+    ConnectionFactory pool = pool(physicalConnection());
+
+    StepVerifier.create(ConnectionScope.withConnection(pool, connection -> {
+      R2dbcTransaction autoCommitted = new R2dbcTransaction(pool, TransactionIsolationLevel.SERIALIZABLE, true);
+      R2dbcTransaction transactional = new R2dbcTransaction(pool, null, false);
+      return autoCommitted.getConnection()
+          .doOnNext(c -> assertSame(connection, c))
+          .then(Mono.defer(autoCommitted::close))
+          .then(transactional.getConnection())
+          .doOnNext(c -> assertNotSame(connection, c))
+          .then(Mono.defer(transactional::close));
+    })).verifyComplete();
+    assertEquals(2, acquisitions.get());
+    assertEquals(IsolationLevel.READ_COMMITTED, isolationLevel);
+    assertEquals(2, calls.stream().filter("setAutoCommit"::equals).count());
+  }
+
+  @Test
+  void shouldSetIsolationLevelOncePerPhysicalConnection() {
+    ConnectionFactory pool = pool(physicalConnection());
+    for (int i = 0; i < 2; i++) {
+      R2dbcTransaction transaction = new R2dbcTransaction(pool, TransactionIsolationLevel.SERIALIZABLE, true);
+      StepVerifier.create(transaction.getConnection().then(Mono.defer(transaction::close))).verifyComplete();
+    }
+    assertEquals(1, calls.stream().filter("setTransactionIsolationLevel"::equals).count());
+
+    // e.g. reset by the pool or changed by a statement of the application
+    isolationLevel = IsolationLevel.READ_COMMITTED;
+    R2dbcTransaction transaction = new R2dbcTransaction(pool, TransactionIsolationLevel.SERIALIZABLE, true);
+    StepVerifier.create(transaction.getConnection().then(Mono.defer(transaction::close))).verifyComplete();
+    assertEquals(2, calls.stream().filter("setTransactionIsolationLevel"::equals).count());
+    assertEquals(IsolationLevel.SERIALIZABLE, isolationLevel);
+  }
+
+  @Test
+  void shouldSkipAutoCommitResetOnClose() {
+    ConnectionFactory pool = pool(physicalConnection());
+    R2dbcTransaction transaction = new R2dbcTransaction(pool, null, false, true);
+    StepVerifier.create(transaction.getConnection().then(Mono.defer(transaction::close))).verifyComplete();
+    assertEquals(1, calls.stream().filter("setAutoCommit"::equals).count());
+  }
+
+  private Connection physicalConnection() {
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class},
+        (proxy, method, args) -> {
+          calls.add(method.getName());
+          switch (method.getName()) {
+            case "isAutoCommit":
+              return autoCommit;
+            case "setAutoCommit":
+              autoCommit = (Boolean) args[0];
+              return Mono.empty();
+            case "getTransactionIsolationLevel":
+              return isolationLevel;
+            case "setTransactionIsolationLevel":
+              isolationLevel = (IsolationLevel) args[0];
+              return Mono.empty();
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return Mono.empty();
+          }
+        });
+  }
+
+  private ConnectionFactory pool(Connection physical) {
+    // every lease hands out a new wrapper around the same physical connection
+    return (ConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ConnectionFactory.class},
+        (proxy, method, args) -> Mono.fromSupplier(acquisitions::incrementAndGet).map(n -> Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] {Connection.class, Wrapped.class}, (lease, leaseMethod, leaseArgs) -> {
+              if (leaseMethod.getName().equals("unwrap")) {
+                return physical;
+              }
+              if (leaseMethod.getName().equals("close")) {
+                return Mono.fromRunnable(() -> calls.add("leaseClose"));
+              }
+              return leaseMethod.invoke(physical, leaseArgs);
+            })).delayElement(Duration.ofMillis(10)));
+  }
+
+}